@@ -0,0 +1,88 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Common state for benchmarks that run against a value factory.
+ * 
+ * Mirrors the <code>setUp(IValueFactory)</code> convention of the
+ * <code>BaseTest*</code> classes: subclasses override
+ * {@link #setUp(IValueFactory)} to build their fixtures, and the factory
+ * is selected by the <code>factory</code> parameter (see {@link ValueFactories}).
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractValueBenchmark {
+	@Param({ValueFactories.FAST, ValueFactories.REFERENCE})
+	public String factory;
+
+	protected IValueFactory vf;
+	protected TypeFactory tf;
+	protected TypeStore ts;
+
+	private Type nodeADT;
+	private Type nodeCons;
+
+	@Setup
+	public void setUpFactory() throws Exception {
+		setUp(ValueFactories.forName(factory));
+	}
+
+	protected void setUp(IValueFactory factory) throws Exception {
+		this.vf = factory;
+		this.tf = TypeFactory.getInstance();
+		this.ts = new TypeStore();
+		this.nodeADT = tf.abstractDataType(ts, "Elem");
+		this.nodeCons = tf.constructor(ts, nodeADT, "elem", tf.integerType(), tf.stringType());
+	}
+
+	/**
+	 * @return the element type for the given kind: "int", "str", "tuple" or "node"
+	 */
+	protected Type elementType(String kind) {
+		switch (kind) {
+		case "int":
+			return tf.integerType();
+		case "str":
+			return tf.stringType();
+		case "tuple":
+			return tf.tupleType(tf.integerType(), tf.integerType());
+		case "node":
+			return nodeADT;
+		default:
+			throw new IllegalArgumentException("Unknown element kind: " + kind);
+		}
+	}
+
+	/**
+	 * @return the i'th element of the given kind; equal i give equal elements
+	 */
+	protected IValue element(String kind, int i) {
+		switch (kind) {
+		case "int":
+			return vf.integer(i);
+		case "str":
+			return vf.string("s" + i);
+		case "tuple":
+			return vf.tuple(vf.integer(i), vf.integer(i >>> 1));
+		case "node":
+			return vf.constructor(nodeCons, vf.integer(i), vf.string("n" + i));
+		default:
+			throw new IllegalArgumentException("Unknown element kind: " + kind);
+		}
+	}
+}
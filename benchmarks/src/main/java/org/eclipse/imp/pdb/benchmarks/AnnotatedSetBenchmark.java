@@ -0,0 +1,127 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IConstructor;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Set insertion and equality of AST-like trees that carry a source location
+ * annotation on every node, against the same trees without annotations.
+ *
+ * Each tree is a balanced binary tree of <code>depth</code> levels; there
+ * are <code>trees</code> distinct ones. The annotated and plain trees are
+ * equal under isEqual, so "insertPlainIntoAnnotated" exercises the
+ * annotation-insensitive hash and equality on every lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnnotatedSetBenchmark extends AbstractValueBenchmark {
+	@Param({"1000", "10000"})
+	public int trees;
+
+	@Param({"6"})
+	public int depth;
+
+	private Type leaf;
+	private Type bin;
+	private URI file;
+	private IValue[] plain;
+	private IValue[] annotated;
+	private ISet annotatedSet;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		Type adt = tf.abstractDataType(ts, "Exp");
+		leaf = tf.constructor(ts, adt, "lit", tf.integerType());
+		bin = tf.constructor(ts, adt, "add", adt, adt);
+		ts.declareAnnotation(adt, "pos", tf.sourceLocationType());
+		file = URI.create("file:///bench/Exp.src");
+
+		plain = new IValue[trees];
+		annotated = new IValue[trees];
+		for (int i = 0; i < trees; i++) {
+			plain[i] = tree(depth, i << depth, false);
+			annotated[i] = tree(depth, i << depth, true);
+		}
+		annotatedSet = insertAll(annotated);
+	}
+
+	private IValue tree(int d, int first, boolean annotate) {
+		IConstructor c;
+		if (d == 0) {
+			c = vf.constructor(leaf, vf.integer(first));
+		}
+		else {
+			int half = 1 << (d - 1);
+			c = vf.constructor(bin, tree(d - 1, first, annotate), tree(d - 1, first + half, annotate));
+		}
+		if (!annotate) {
+			return c;
+		}
+		int width = 1 << d;
+		return c.asAnnotatable().setAnnotation("pos", vf.sourceLocation(file, first * 4, width * 4, first, first + width, 0, 4));
+	}
+
+	private ISet insertAll(IValue[] values) {
+		ISetWriter w = vf.setWriter();
+		for (IValue v : values) {
+			w.insert(v);
+		}
+		return w.done();
+	}
+
+	@Benchmark
+	public ISet insertPlain() {
+		return insertAll(plain);
+	}
+
+	@Benchmark
+	public ISet insertAnnotated() {
+		return insertAll(annotated);
+	}
+
+	@Benchmark
+	public int insertPlainIntoAnnotated() {
+		ISet set = annotatedSet;
+		for (IValue v : plain) {
+			set = set.insert(v);
+		}
+		return set.size();
+	}
+
+	@Benchmark
+	public int isEqualAnnotatedPlain() {
+		int equal = 0;
+		for (int i = 0; i < trees; i++) {
+			if (annotated[i].isEqual(plain[i])) {
+				equal++;
+			}
+		}
+		return equal;
+	}
+}
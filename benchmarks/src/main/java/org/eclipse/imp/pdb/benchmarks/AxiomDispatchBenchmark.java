@@ -0,0 +1,102 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.INumber;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.test.AxiomInvoker;
+import org.eclipse.imp.pdb.test.BaseTestRandomValues;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-call overhead of axiom dispatch: a direct call, Method.invoke (as
+ * testAxioms used to do) and an AxiomInvoker, both on an empty method, to
+ * isolate the dispatch cost, and on axiomCommutativity, a typical cheap axiom.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AxiomDispatchBenchmark extends AbstractValueBenchmark {
+	private Axioms axioms;
+	private Object[] args;
+	private INumber a;
+	private INumber b;
+
+	private Method noopMethod;
+	private Method commutativityMethod;
+	private AxiomInvoker noopInvoker;
+	private AxiomInvoker commutativityInvoker;
+
+	public static class Axioms extends BaseTestRandomValues {
+		public int calls;
+
+		void init(IValueFactory factory) throws Exception {
+			setUp(factory);
+		}
+
+		public void noop(INumber a, INumber b) {
+			calls++;
+		}
+	}
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		axioms = new Axioms();
+		axioms.init(factory);
+		a = vf.integer(12345);
+		b = vf.integer(-678);
+		args = new Object[] {a, b};
+
+		noopMethod = Axioms.class.getMethod("noop", INumber.class, INumber.class);
+		commutativityMethod = Axioms.class.getMethod("axiomCommutativity", INumber.class, INumber.class);
+		noopInvoker = AxiomInvoker.bind(axioms, noopMethod);
+		commutativityInvoker = AxiomInvoker.bind(axioms, commutativityMethod);
+	}
+
+	@Benchmark
+	public void noopDirect() {
+		axioms.noop(a, b);
+	}
+
+	@Benchmark
+	public void noopReflective() throws Exception {
+		noopMethod.invoke(axioms, args);
+	}
+
+	@Benchmark
+	public void noopInvoker() throws Throwable {
+		noopInvoker.invoke(args);
+	}
+
+	@Benchmark
+	public void commutativityDirect() {
+		axioms.axiomCommutativity(a, b);
+	}
+
+	@Benchmark
+	public void commutativityReflective() throws Exception {
+		commutativityMethod.invoke(axioms, args);
+	}
+
+	@Benchmark
+	public void commutativityInvoker() throws Throwable {
+		commutativityInvoker.invoke(args);
+	}
+}
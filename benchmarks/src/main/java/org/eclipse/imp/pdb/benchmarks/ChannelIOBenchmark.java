@@ -0,0 +1,140 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.test.io.ChannelBinaryReader;
+import org.eclipse.imp.pdb.test.io.ChannelBinaryWriter;
+import org.eclipse.imp.pdb.test.io.CollectionKind;
+import org.eclipse.imp.pdb.test.io.StreamingBinaryReader;
+import org.eclipse.imp.pdb.test.io.StreamingBinaryWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing and reading <code>count</code> separate values through a file,
+ * with {@link ChannelBinaryWriter} and {@link ChannelBinaryReader} on a
+ * FileChannel against {@link StreamingBinaryWriter} and
+ * {@link StreamingBinaryReader} on buffered file streams, which frame each
+ * value the same way but encode it through a byte array.
+ *
+ * Besides invocations per second, JMH reports the {@link Rates} counters:
+ * bytes per second (divide by 2^20 for MB/s) and values per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChannelIOBenchmark extends AbstractValueBenchmark {
+	@Param({"100000"})
+	public int count;
+
+	@Param({"int", "str", "node"})
+	public String elementType;
+
+	private IValue[] values;
+	private File channelFile;
+	private File streamFile;
+	private File out;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		values = new IValue[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = element(elementType, i);
+		}
+		channelFile = File.createTempFile("pdb-bench", ".pbfc");
+		streamFile = File.createTempFile("pdb-bench", ".pbfs");
+		out = File.createTempFile("pdb-bench", ".out");
+		writeChannel(channelFile);
+		writeStream(streamFile);
+	}
+
+	@TearDown
+	public void tearDown() {
+		channelFile.delete();
+		streamFile.delete();
+		out.delete();
+	}
+
+	private long writeChannel(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				ChannelBinaryWriter writer = new ChannelBinaryWriter(channel, ts)) {
+			for (IValue v : values) {
+				writer.write(v);
+			}
+			writer.flush();
+			return channel.position();
+		}
+	}
+
+	private long writeStream(File file) throws IOException {
+		try (StreamingBinaryWriter writer = new StreamingBinaryWriter(new FileOutputStream(file), ts, CollectionKind.LIST)) {
+			for (IValue v : values) {
+				writer.write(v);
+			}
+		}
+		return file.length();
+	}
+
+	@Benchmark
+	public long channelWrite(Rates rates) throws IOException {
+		long bytes = writeChannel(out);
+		rates.add(bytes, count);
+		return bytes;
+	}
+
+	@Benchmark
+	public long streamWrite(Rates rates) throws IOException {
+		long bytes = writeStream(out);
+		rates.add(bytes, count);
+		return bytes;
+	}
+
+	@Benchmark
+	public int channelRead(Rates rates) throws IOException {
+		int n = 0;
+		try (ChannelBinaryReader reader = new ChannelBinaryReader(vf, ts, FileChannel.open(channelFile.toPath()))) {
+			while (reader.read() != null) {
+				n++;
+			}
+		}
+		rates.add(channelFile.length(), n);
+		return n;
+	}
+
+	@Benchmark
+	public int streamRead(Rates rates) throws IOException {
+		int n = 0;
+		try (StreamingBinaryReader reader = new StreamingBinaryReader(vf, ts, new FileInputStream(streamFile))) {
+			while (reader.read() != null) {
+				n++;
+			}
+		}
+		rates.add(streamFile.length(), n);
+		return n;
+	}
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.test.relational.SemiNaiveClosure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Library closure against the semi-naive closure on random call-graph-like
+ * relations of growing size.
+ * 
+ * Every node gets <code>outDegree</code> edges to randomly chosen
+ * lower-numbered nodes, which gives a DAG whose rows stay far smaller than
+ * the node count, as in real call graphs.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClosureBenchmark extends AbstractValueBenchmark {
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int nodes;
+
+	@Param({"1", "2"})
+	public int outDegree;
+
+	private ISet graph;
+	private ForkJoinPool sequential;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		Random rnd = new Random(42);
+		ISetWriter w = vf.setWriter(tf.tupleType(tf.integerType(), tf.integerType()));
+		for (int i = 1; i < nodes; i++) {
+			for (int d = 0; d < outDegree; d++) {
+				w.insert(vf.tuple(vf.integer(i), vf.integer(rnd.nextInt(i))));
+			}
+		}
+		graph = w.done();
+		sequential = new ForkJoinPool(1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		sequential.shutdown();
+	}
+
+	@Benchmark
+	public ISet library() {
+		return graph.asRelation().closure();
+	}
+
+	@Benchmark
+	public ISet semiNaiveSequential() {
+		return SemiNaiveClosure.closure(vf, graph, sequential);
+	}
+
+	@Benchmark
+	public ISet semiNaiveParallel() {
+		return SemiNaiveClosure.closure(vf, graph);
+	}
+}
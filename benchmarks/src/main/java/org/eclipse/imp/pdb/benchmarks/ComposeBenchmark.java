@@ -0,0 +1,78 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.test.relational.HashJoinCompose;
+import org.eclipse.imp.pdb.test.relational.JoinIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Library compose against the hash-join compose, with and without a
+ * pre-built index of the right-hand operand.
+ * 
+ * Both operands are random rel[int,int] with <code>size</code> tuples over
+ * <code>size</code> nodes, so the result is of the same order as the input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ComposeBenchmark extends AbstractValueBenchmark {
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int size;
+
+	private ISet left;
+	private ISet right;
+	private JoinIndex rightIndex;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		Random rnd = new Random(42);
+		left = randomRelation(rnd);
+		right = randomRelation(rnd);
+		rightIndex = JoinIndex.build(right, 2);
+	}
+
+	private ISet randomRelation(Random rnd) {
+		ISetWriter w = vf.setWriter(tf.tupleType(tf.integerType(), tf.integerType()));
+		for (int i = 0; i < size; i++) {
+			w.insert(vf.tuple(vf.integer(rnd.nextInt(size)), vf.integer(rnd.nextInt(size))));
+		}
+		return w.done();
+	}
+
+	@Benchmark
+	public ISet library() {
+		return left.asRelation().compose(right.asRelation());
+	}
+
+	@Benchmark
+	public ISet hashJoin() {
+		return HashJoinCompose.compose(vf, left, right);
+	}
+
+	@Benchmark
+	public ISet hashJoinCachedIndex() {
+		return HashJoinCompose.compose(vf, left, rightIndex);
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IConstructor;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * isEqual and hashCode on balanced binary constructor trees of 2^(depth+1)-1
+ * nodes; depth 19 gives 10^6 nodes.
+ *
+ * "copy" is an independently built equal tree, "differentLeaf" an
+ * independently built tree with the middle leaf changed, and
+ * "sharedDifferentLeaf" the same change made by rebuilding only the path
+ * to that leaf, so all other subtrees are shared with the original.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DeepEqualityBenchmark extends AbstractValueBenchmark {
+	@Param({"10", "19"})
+	public int depth;
+
+	private Type leaf;
+	private Type bin;
+	private IValue tree;
+	private IValue copy;
+	private IValue differentLeaf;
+	private IValue sharedDifferentLeaf;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		Type adt = tf.abstractDataType(ts, "Tree");
+		leaf = tf.constructor(ts, adt, "leaf", tf.integerType());
+		bin = tf.constructor(ts, adt, "bin", adt, adt);
+
+		int middle = 1 << (depth - 1);
+		tree = tree(depth, 0, -1);
+		copy = tree(depth, 0, -1);
+		differentLeaf = tree(depth, 0, middle);
+		sharedDifferentLeaf = replaceLeaf(tree, depth, middle);
+	}
+
+	private IValue tree(int d, int first, int changed) {
+		if (d == 0) {
+			return vf.constructor(leaf, vf.integer(first == changed ? -1 : first));
+		}
+		int half = 1 << (d - 1);
+		return vf.constructor(bin, tree(d - 1, first, changed), tree(d - 1, first + half, changed));
+	}
+
+	private IValue replaceLeaf(IValue t, int d, int index) {
+		if (d == 0) {
+			return vf.constructor(leaf, vf.integer(-1));
+		}
+		IConstructor c = (IConstructor) t;
+		int half = 1 << (d - 1);
+		if (index < half) {
+			return c.set(0, replaceLeaf(c.get(0), d - 1, index));
+		}
+		return c.set(1, replaceLeaf(c.get(1), d - 1, index - half));
+	}
+
+	@Benchmark
+	public boolean equalCopy() {
+		return tree.isEqual(copy);
+	}
+
+	@Benchmark
+	public boolean differentLeaf() {
+		return tree.isEqual(differentLeaf);
+	}
+
+	@Benchmark
+	public boolean sharedDifferentLeaf() {
+		return tree.isEqual(sharedDifferentLeaf);
+	}
+
+	@Benchmark
+	public boolean identical() {
+		return tree.isEqual(tree);
+	}
+
+	@Benchmark
+	public int hashCodeOfTree() {
+		return copy.hashCode();
+	}
+}
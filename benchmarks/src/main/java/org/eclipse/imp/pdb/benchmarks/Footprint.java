@@ -0,0 +1,73 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reports the heap retained by a value as a secondary JMH result.
+ *
+ * A benchmark method takes this state as a parameter and calls
+ * {@link #retain(Object)} with what it built; the heap in use after a full
+ * collection is compared against the same measure taken before the
+ * invocation. Use it from single-shot benchmarks with a single measurement
+ * iteration only: the collections dominate the time, and JMH sums event
+ * counters over iterations. Only the counter is public, as JMH reports
+ * every public numeric field and getter of the state.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class Footprint {
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+	/** bytes retained by the last value passed to {@link #retain(Object)} */
+	public long retainedBytes;
+
+	private long baseline;
+	private Object retained;
+
+	@Setup(Level.Invocation)
+	public void baseline() {
+		retained = null;
+		baseline = usedHeap();
+	}
+
+	void retain(Object value) {
+		retained = value;
+		retainedBytes = usedHeap() - baseline;
+	}
+
+	/**
+	 * @return the value last passed to {@link #retain(Object)}, which keeps
+	 * it reachable until the measurement is done
+	 */
+	Object retained() {
+		return retained;
+	}
+
+	private static long usedHeap() {
+		long used = Long.MAX_VALUE;
+		// repeat until the collector stops finding garbage
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			long now = MEMORY.getHeapMemoryUsage().getUsed();
+			if (now >= used) {
+				return now;
+			}
+			used = now;
+		}
+		return used;
+	}
+}
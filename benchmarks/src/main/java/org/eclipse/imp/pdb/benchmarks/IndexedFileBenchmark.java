@@ -0,0 +1,114 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryReader;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryWriter;
+import org.eclipse.imp.pdb.test.io.IndexedBinaryFile;
+import org.eclipse.imp.pdb.test.io.IndexedBinaryWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Point lookups in an indexed, memory-mapped file against reading the whole
+ * value back from a plain PBF file, which is what answering the same query
+ * costs without an index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexedFileBenchmark extends AbstractValueBenchmark {
+	@Param({"10000", "1000000"})
+	public int size;
+
+	@Param({"int", "str", "node"})
+	public String elementType;
+
+	private File plainFile;
+	private File indexedFile;
+	private IndexedBinaryFile indexed;
+	private IValue[] probes;
+	private int next;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		ISetWriter w = vf.setWriter(elementType(elementType));
+		for (int i = 0; i < size; i++) {
+			w.insert(element(elementType, i));
+		}
+		ISet set = w.done();
+
+		plainFile = File.createTempFile("pdb-bench", ".pbf");
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(plainFile))) {
+			new BinaryWriter(set, out, ts).serialize();
+		}
+		indexedFile = File.createTempFile("pdb-bench", ".pbfi");
+		IndexedBinaryWriter.write(set, indexedFile, ts);
+		indexed = new IndexedBinaryFile(vf, ts, indexedFile);
+
+		Random rnd = new Random(42);
+		probes = new IValue[1024];
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = element(elementType, rnd.nextInt(size));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		indexed.close();
+		plainFile.delete();
+		indexedFile.delete();
+	}
+
+	private IValue probe() {
+		return probes[next++ & (probes.length - 1)];
+	}
+
+	@Benchmark
+	public IValue indexedGet() throws IOException {
+		return indexed.get((next++ & Integer.MAX_VALUE) % size);
+	}
+
+	@Benchmark
+	public boolean indexedContains() throws IOException {
+		return indexed.contains(probe());
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public boolean fullReadContains() throws IOException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(plainFile))) {
+			return ((ISet) new BinaryReader(vf, ts, in).deserialize()).contains(probe());
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput and memory footprint of set[int] and rel[int,int], the shapes
+ * that dominate our analyses, up to 10^7 elements.
+ *
+ * The relation holds (i, i * 7 % size), so every element occurs once in each
+ * column. {@link #footprint(Footprint)} reports the retained heap in its
+ * <code>retainedBytes</code> counter; divide by size for bytes per element.
+ *
+ * 10^7 elements need a large heap, e.g.
+ * <code>java -jar target/benchmarks.jar IntSetBenchmark -jvmArgs -Xmx8g</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class IntSetBenchmark extends AbstractValueBenchmark {
+	@Param({"100000", "1000000", "10000000"})
+	public int size;
+
+	@Param({"set", "rel"})
+	public String shape;
+
+	private ISet value;
+	private IValue[] probes;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		value = build();
+		probes = new IValue[1024];
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = element((int) ((long) i * size / probes.length));
+		}
+	}
+
+	private IValue element(int i) {
+		if (shape.equals("rel")) {
+			return vf.tuple(vf.integer(i), vf.integer((int) ((long) i * 7 % size)));
+		}
+		return vf.integer(i);
+	}
+
+	private ISet build() {
+		ISetWriter w = shape.equals("rel")
+				? vf.setWriter(tf.tupleType(tf.integerType(), tf.integerType()))
+				: vf.setWriter(tf.integerType());
+		for (int i = 0; i < size; i++) {
+			w.insert(element(i));
+		}
+		return w.done();
+	}
+
+	@Benchmark
+	public ISet load() {
+		return build();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int contains() {
+		int hits = 0;
+		for (IValue p : probes) {
+			if (value.contains(p)) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+	@Benchmark
+	public void iterate(Blackhole bh) {
+		for (IValue v : value) {
+			bh.consume(v);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	public Object footprint(Footprint footprint) {
+		footprint.retain(build());
+		return footprint.retained();
+	}
+}
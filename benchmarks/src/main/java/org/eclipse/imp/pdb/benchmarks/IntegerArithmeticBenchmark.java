@@ -0,0 +1,133 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IInteger;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.test.random.SplitMixRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * add, multiply, compare and divide on IIntegers of one size class, per
+ * operation.
+ *
+ * "small" operands are in [-128, 1024), where a factory may hand out cached
+ * instances; "int" and "long" operands fill those ranges, so "long" sums
+ * and products overflow into big values; "big" operands are around 2^100.
+ * "counter" is the loop most code actually runs: i = i.add(1) from 0.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IntegerArithmeticBenchmark extends AbstractValueBenchmark {
+	private static final int OPERANDS = 1024;
+
+	@Param({"small", "int", "long", "big"})
+	public String size;
+
+	private IInteger[] left;
+	private IInteger[] right;
+	private IInteger one;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		SplitMixRandom random = new SplitMixRandom(42);
+		left = new IInteger[OPERANDS];
+		right = new IInteger[OPERANDS];
+		for (int i = 0; i < OPERANDS; i++) {
+			left[i] = operand(random);
+			right[i] = operand(random);
+		}
+		one = vf.integer(1);
+	}
+
+	private IInteger operand(SplitMixRandom random) {
+		long n;
+		switch (size) {
+		case "small":
+			n = random.nextInt(1024 + 128) - 128;
+			break;
+		case "int":
+			n = random.nextInt();
+			break;
+		case "long":
+			n = random.nextLong();
+			break;
+		case "big":
+			return vf.integer(BigInteger.ONE.shiftLeft(100).add(BigInteger.valueOf(random.nextLong())).toString());
+		default:
+			throw new IllegalArgumentException("Unknown size class: " + size);
+		}
+		// divide needs a non-zero right operand
+		return vf.integer(n == 0 ? 1 : n);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERANDS)
+	public IInteger add() {
+		IInteger r = null;
+		for (int i = 0; i < OPERANDS; i++) {
+			r = left[i].add(right[i]);
+		}
+		return r;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERANDS)
+	public IInteger multiply() {
+		IInteger r = null;
+		for (int i = 0; i < OPERANDS; i++) {
+			r = left[i].multiply(right[i]);
+		}
+		return r;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERANDS)
+	public int compare() {
+		int r = 0;
+		for (int i = 0; i < OPERANDS; i++) {
+			r += left[i].compare(right[i]);
+		}
+		return r;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERANDS)
+	public IInteger divide() {
+		IInteger r = null;
+		for (int i = 0; i < OPERANDS; i++) {
+			r = left[i].divide(right[i]);
+		}
+		return r;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERANDS)
+	public IInteger counter() {
+		IInteger r = vf.integer(0);
+		for (int i = 0; i < OPERANDS; i++) {
+			r = r.add(one);
+		}
+		return r;
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryReader;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryWriter;
+import org.eclipse.imp.pdb.test.io.ChunkedBinaryReader;
+import org.eclipse.imp.pdb.test.io.ChunkedBinaryWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading one large set or list of <code>size</code> elements from a file
+ * written by {@link ChunkedBinaryWriter}, with {@link ChunkedBinaryReader}
+ * on a fork/join pool of <code>threads</code> workers, against reading the
+ * same collection as a single PBF value with {@link BinaryReader}.
+ *
+ * The scaling curve is "chunkedRead" over <code>threads</code>; "pbfRead"
+ * does not depend on it and is the sequential baseline. Besides
+ * invocations per second, JMH reports the {@link Rates} counters: bytes
+ * per second (divide by 2^20 for MB/s) and elements per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelReadBenchmark extends AbstractValueBenchmark {
+	@Param({"1", "2", "4", "8", "16", "32"})
+	public int threads;
+
+	@Param({"100000", "1000000"})
+	public int size;
+
+	@Param({"int", "str", "node"})
+	public String elementType;
+
+	@Param({"set", "list"})
+	public String collection;
+
+	@Param({"4096"})
+	public int segmentSize;
+
+	private ForkJoinPool pool;
+	private File chunked;
+	private File pbf;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		IValue value;
+		if (collection.equals("set")) {
+			ISetWriter w = vf.setWriter(elementType(elementType));
+			for (int i = 0; i < size; i++) {
+				w.insert(element(elementType, i));
+			}
+			value = w.done();
+		}
+		else {
+			IListWriter w = vf.listWriter(elementType(elementType));
+			for (int i = 0; i < size; i++) {
+				w.append(element(elementType, i));
+			}
+			value = w.done();
+		}
+
+		chunked = File.createTempFile("pdb-bench", ".pbfc");
+		ChunkedBinaryWriter.write(value, chunked, ts, segmentSize);
+		pbf = File.createTempFile("pdb-bench", ".pbf");
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(pbf), 1 << 16)) {
+			new BinaryWriter(value, out, ts).serialize();
+		}
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+		chunked.delete();
+		pbf.delete();
+	}
+
+	@Benchmark
+	public IValue chunkedRead(Rates rates) throws IOException {
+		try (ChunkedBinaryReader reader = new ChunkedBinaryReader(vf, ts, chunked)) {
+			IValue result = reader.readAll(pool);
+			rates.add(chunked.length(), reader.size());
+			return result;
+		}
+	}
+
+	@Benchmark
+	public IValue pbfRead(Rates rates) throws IOException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(pbf), 1 << 16)) {
+			IValue result = new BinaryReader(vf, ts, in).deserialize();
+			rates.add(pbf.length(), size);
+			return result;
+		}
+	}
+}
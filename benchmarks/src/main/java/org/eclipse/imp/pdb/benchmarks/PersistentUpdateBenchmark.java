@@ -0,0 +1,127 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IMap;
+import org.eclipse.imp.pdb.facts.IMapWriter;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Successive single-element updates of immutable sets and maps, the pattern
+ * of incremental analysis loops, against bulk loading through a writer.
+ *
+ * With a copying representation the successive variants are quadratic, so
+ * expect the larger sizes to take very long there. The footprint variants
+ * keep every 1000th intermediate version alive; with structural sharing
+ * they retain little more than the final version.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersistentUpdateBenchmark extends AbstractValueBenchmark {
+	@Param({"10000", "100000", "1000000"})
+	public int size;
+
+	@Param({"int", "str"})
+	public String elementType;
+
+	private IValue[] elements;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		elements = new IValue[size];
+		for (int i = 0; i < size; i++) {
+			elements[i] = element(elementType, i);
+		}
+	}
+
+	@Benchmark
+	public ISet successiveInserts() {
+		ISet set = vf.set(elementType(elementType));
+		for (IValue e : elements) {
+			set = set.insert(e);
+		}
+		return set;
+	}
+
+	@Benchmark
+	public ISet writerInserts() {
+		ISetWriter w = vf.setWriter(elementType(elementType));
+		for (IValue e : elements) {
+			w.insert(e);
+		}
+		return w.done();
+	}
+
+	@Benchmark
+	public IMap successivePuts() {
+		IMap map = vf.map(elementType(elementType), tf.integerType());
+		for (int i = 0; i < elements.length; i++) {
+			map = map.put(elements[i], vf.integer(i));
+		}
+		return map;
+	}
+
+	@Benchmark
+	public IMap writerPuts() {
+		IMapWriter w = vf.mapWriter(elementType(elementType), tf.integerType());
+		for (int i = 0; i < elements.length; i++) {
+			w.put(elements[i], vf.integer(i));
+		}
+		return w.done();
+	}
+
+	@Benchmark
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	public Object footprintSuccessive(Footprint footprint) {
+		footprint.retain(successiveInserts());
+		return footprint.retained();
+	}
+
+	@Benchmark
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	public Object footprintWriter(Footprint footprint) {
+		footprint.retain(writerInserts());
+		return footprint.retained();
+	}
+
+	@Benchmark
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	public Object footprintVersions(Footprint footprint) {
+		ISet[] versions = new ISet[size / 1000 + 1];
+		ISet set = vf.set(elementType(elementType));
+		for (int i = 0; i < elements.length; i++) {
+			if (i % 1000 == 0) {
+				versions[i / 1000] = set;
+			}
+			set = set.insert(elements[i]);
+		}
+		versions[versions.length - 1] = set;
+		footprint.retain(versions);
+		return footprint.retained();
+	}
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Bytes and values processed, reported by JMH as rates next to the primary
+ * result of a throughput benchmark that takes this state as a parameter.
+ * bytes / values is the encoded size per value.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Rates {
+	public long bytes;
+	public long values;
+
+	/**
+	 * JMH divides the counters by the time of one iteration, so they
+	 * start from zero in each.
+	 */
+	@Setup(Level.Iteration)
+	public void reset() {
+		bytes = values = 0;
+	}
+
+	void add(long bytes, long values) {
+		this.bytes += bytes;
+		this.values += values;
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IRational;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.test.random.SplitMixRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Chains of <code>length</code> rational operations, each on the result
+ * of the previous one, so every step normalizes a fresh fraction.
+ *
+ * The operands are small fractions with common factors. The add and
+ * multiply chains apply each operand and then its inverse (subtract,
+ * divide) with the same operand, so the running value returns to 0 or 1
+ * every two steps and every step fits in long arithmetic;
+ * "growing" lets the denominator of a sum grow past long range to show
+ * the cost once promotion to big integers is needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RationalArithmeticBenchmark extends AbstractValueBenchmark {
+	private static final int OPERANDS = 1024;
+
+	@Param({"1000000"})
+	public int length;
+
+	private IRational[] operands;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		SplitMixRandom random = new SplitMixRandom(42);
+		operands = new IRational[OPERANDS];
+		for (int i = 0; i < OPERANDS; i++) {
+			int factor = random.nextInt(12) + 1;
+			operands[i] = vf.rational((random.nextInt(200) + 1) * factor, (random.nextInt(200) + 1) * factor);
+		}
+	}
+
+	@Benchmark
+	public IRational addChain() {
+		IRational r = vf.rational(0, 1);
+		for (int i = 0; i < length; i++) {
+			IRational o = operands[(i >>> 1) & (OPERANDS - 1)];
+			r = (i & 1) == 0 ? r.add(o) : r.subtract(o);
+		}
+		return r;
+	}
+
+	@Benchmark
+	public IRational multiplyChain() {
+		IRational r = vf.rational(1, 1);
+		for (int i = 0; i < length; i++) {
+			IRational o = operands[(i >>> 1) & (OPERANDS - 1)];
+			r = (i & 1) == 0 ? r.multiply(o) : r.divide(o);
+		}
+		return r;
+	}
+
+	@Benchmark
+	public int compareChain() {
+		int r = 0;
+		for (int i = 0; i < length; i++) {
+			r += operands[i & (OPERANDS - 1)].compare(operands[(i + 1) & (OPERANDS - 1)]);
+		}
+		return r;
+	}
+
+	@Benchmark
+	public IRational growing() {
+		IRational r = vf.rational(0, 1);
+		for (int i = 0; i < OPERANDS; i++) {
+			r = r.add(vf.rational(1, i + 1));
+		}
+		return r;
+	}
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IReal;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.test.random.SplitMixRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Numeric loops over IReals: a sum, a dot product, Horner evaluation of a
+ * polynomial and a chain of divisions at the factory's precision, with the
+ * same loops on plain doubles as the floor.
+ *
+ * "double" operands are made with vf.real(double), as RandomRealGenerator
+ * and most client code do; "decimal" operands are parsed from 30-digit
+ * strings no double can hold.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RealArithmeticBenchmark extends AbstractValueBenchmark {
+	private static final int PRECISION = 100;
+	private static final int DEGREE = 16;
+
+	@Param({"1000"})
+	public int size;
+
+	@Param({"double", "decimal"})
+	public String operands;
+
+	private double[] xs;
+	private double[] ys;
+	private IReal[] left;
+	private IReal[] right;
+	private IReal[] coefficients;
+	private IReal point;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		vf.setPrecision(PRECISION);
+		SplitMixRandom random = new SplitMixRandom(42);
+		xs = new double[size];
+		ys = new double[size];
+		left = new IReal[size];
+		right = new IReal[size];
+		for (int i = 0; i < size; i++) {
+			xs[i] = random.nextDouble() * 2 - 1;
+			ys[i] = random.nextDouble() * 2 - 1;
+			left[i] = real(xs[i], random);
+			right[i] = real(ys[i], random);
+		}
+		coefficients = new IReal[DEGREE + 1];
+		for (int i = 0; i <= DEGREE; i++) {
+			coefficients[i] = left[i];
+		}
+		point = vf.real(0.5);
+	}
+
+	private IReal real(double d, SplitMixRandom random) {
+		if (operands.equals("decimal")) {
+			StringBuilder digits = new StringBuilder(d < 0 ? "-0." : "0.");
+			for (int i = 0; i < 30; i++) {
+				digits.append((char) ('0' + random.nextInt(10)));
+			}
+			return vf.real(digits.toString());
+		}
+		return vf.real(d);
+	}
+
+	@Benchmark
+	public IReal sum() {
+		IReal r = vf.real(0.0);
+		for (IReal x : left) {
+			r = r.add(x);
+		}
+		return r;
+	}
+
+	@Benchmark
+	public IReal dotProduct() {
+		IReal r = vf.real(0.0);
+		for (int i = 0; i < size; i++) {
+			r = r.add(left[i].multiply(right[i]));
+		}
+		return r;
+	}
+
+	@Benchmark
+	public IReal horner() {
+		IReal r = coefficients[DEGREE];
+		for (int i = DEGREE - 1; i >= 0; i--) {
+			r = r.multiply(point).add(coefficients[i]);
+		}
+		return r;
+	}
+
+	@Benchmark
+	public IReal divideChain() {
+		IReal r = vf.real(1.0);
+		for (int i = 0; i < size; i++) {
+			r = r.divide(right[i], PRECISION).add(left[i]);
+		}
+		return r;
+	}
+
+	@Benchmark
+	public double sumOfDoubles() {
+		double r = 0;
+		for (double x : xs) {
+			r += x;
+		}
+		return r;
+	}
+
+	@Benchmark
+	public double dotProductOfDoubles() {
+		double r = 0;
+		for (int i = 0; i < size; i++) {
+			r += xs[i] * ys[i];
+		}
+		return r;
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.io.StandardTextWriter;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryReader;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryWriter;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.test.random.RandomValueGenerator;
+import org.eclipse.imp.pdb.test.random.SplitMixRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binary and textual serialization, and deep equality, of random values of
+ * a recursive data type.
+ *
+ * "deep" values are narrow trees nested up to 16 levels, "wide" ones nest
+ * 4 levels with collections of up to 100 elements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark extends AbstractValueBenchmark {
+	@Param({"deep", "wide"})
+	public String shape;
+
+	private IValue value;
+	private IValue copy;
+	private byte[] bytes;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		Type tree = tf.abstractDataType(ts, "Tree");
+		tf.constructor(ts, tree, "leaf", elementType("node"));
+		tf.constructor(ts, tree, "branch", tf.listType(tree), tf.mapType(tf.stringType(), tf.realType()));
+		tf.constructor(ts, tree, "tagged", tree, tf.setType(tf.tupleType(tf.integerType(), tf.stringType())));
+
+		boolean deep = shape.equals("deep");
+		value = generator(tree, deep).next();
+		copy = generator(tree, deep).next();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new BinaryWriter(value, out, ts).serialize();
+		bytes = out.toByteArray();
+	}
+
+	private RandomValueGenerator generator(Type type, boolean deep) {
+		return new RandomValueGenerator(vf, ts, type, new SplitMixRandom(42))
+			.setMaxDepth(deep ? 16 : 4)
+			.setMaxWidth(deep ? 3 : 100);
+	}
+
+	@Benchmark
+	public int binaryWrite() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+		new BinaryWriter(value, out, ts).serialize();
+		return out.size();
+	}
+
+	@Benchmark
+	public IValue binaryRead() throws IOException {
+		return new BinaryReader(vf, ts, new ByteArrayInputStream(bytes)).deserialize();
+	}
+
+	@Benchmark
+	public int textWrite() throws IOException {
+		StringWriter out = new StringWriter();
+		new StandardTextWriter().write(value, out);
+		return out.getBuffer().length();
+	}
+
+	@Benchmark
+	public boolean isEqual() {
+		return value.isEqual(copy);
+	}
+}
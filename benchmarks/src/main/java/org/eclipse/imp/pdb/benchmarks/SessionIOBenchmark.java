@@ -0,0 +1,140 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.test.io.CollectionKind;
+import org.eclipse.imp.pdb.test.io.SessionBinaryReader;
+import org.eclipse.imp.pdb.test.io.SessionBinaryWriter;
+import org.eclipse.imp.pdb.test.io.StreamingBinaryReader;
+import org.eclipse.imp.pdb.test.io.StreamingBinaryWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sending <code>count</code> small values one after the other, as an RPC
+ * connection does: through one {@link SessionBinaryWriter}, which shares
+ * its type, constructor and string tables between the values, against
+ * encoding every value separately in the PBF format (as frames of a
+ * {@link StreamingBinaryWriter}), which repeats the type headers each time.
+ *
+ * "message" values are calls like <code>call("get", 17, ["a", "b"])</code>
+ * with method names and arguments from a small vocabulary. The {@link Rates}
+ * counters give bytes per value (bytes / values) and values per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SessionIOBenchmark extends AbstractValueBenchmark {
+	private static final String[] WORDS = {"get", "put", "delete", "list", "watch", "a", "b", "c", "key", "value"};
+
+	@Param({"1000000"})
+	public int count;
+
+	@Param({"int", "str", "node", "message"})
+	public String elementType;
+
+	private IValue[] values;
+	private byte[] session;
+	private byte[] separate;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		Type call = null;
+		if (elementType.equals("message")) {
+			Type message = tf.abstractDataType(ts, "Message");
+			call = tf.constructor(ts, message, "call", tf.stringType(), tf.integerType(), tf.listType(tf.stringType()));
+		}
+		values = new IValue[count];
+		for (int i = 0; i < count; i++) {
+			if (call != null) {
+				values[i] = vf.constructor(call, vf.string(WORDS[i % 5]), vf.integer(i % 1000),
+						vf.list(vf.string(WORDS[5 + i % 5]), vf.string(WORDS[5 + (i >> 3) % 5])));
+			}
+			else {
+				values[i] = element(elementType, i);
+			}
+		}
+		session = writeSession().toByteArray();
+		separate = writeSeparate().toByteArray();
+	}
+
+	private ByteArrayOutputStream writeSession() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (SessionBinaryWriter writer = new SessionBinaryWriter(out, ts)) {
+			for (IValue v : values) {
+				writer.write(v);
+			}
+		}
+		return out;
+	}
+
+	private ByteArrayOutputStream writeSeparate() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (StreamingBinaryWriter writer = new StreamingBinaryWriter(out, ts, CollectionKind.LIST)) {
+			for (IValue v : values) {
+				writer.write(v);
+			}
+		}
+		return out;
+	}
+
+	@Benchmark
+	public int sessionWrite(Rates rates) throws IOException {
+		int bytes = writeSession().size();
+		rates.add(bytes, count);
+		return bytes;
+	}
+
+	@Benchmark
+	public int separateWrite(Rates rates) throws IOException {
+		int bytes = writeSeparate().size();
+		rates.add(bytes, count);
+		return bytes;
+	}
+
+	@Benchmark
+	public int sessionRead(Rates rates) throws IOException {
+		int n = 0;
+		try (SessionBinaryReader reader = new SessionBinaryReader(vf, ts, new ByteArrayInputStream(session))) {
+			while (reader.read() != null) {
+				n++;
+			}
+		}
+		rates.add(session.length, n);
+		return n;
+	}
+
+	@Benchmark
+	public int separateRead(Rates rates) throws IOException {
+		int n = 0;
+		try (StreamingBinaryReader reader = new StreamingBinaryReader(vf, ts, new ByteArrayInputStream(separate))) {
+			while (reader.read() != null) {
+				n++;
+			}
+		}
+		rates.add(separate.length, n);
+		return n;
+	}
+}
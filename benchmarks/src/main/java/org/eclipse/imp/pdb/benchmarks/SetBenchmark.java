@@ -0,0 +1,110 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Set operations at sizes from 10 to 10^7, for each factory and element kind.
+ * 
+ * The fixtures follow BaseTestSet: <code>set</code> holds elements
+ * 0..size-1 and <code>other</code> holds size/2..size/2+size-1, so binary
+ * operations always work on half-overlapping operands.
+ * 
+ * Run with e.g. <code>java -jar target/benchmarks.jar SetBenchmark -p size=1000000</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SetBenchmark extends AbstractValueBenchmark {
+	@Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000"})
+	public int size;
+
+	@Param({"int", "str", "tuple", "node"})
+	public String elementType;
+
+	private ISet set;
+	private ISet other;
+	private IValue present;
+	private IValue absent;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		set = build(0, size);
+		other = build(size / 2, size);
+		present = element(elementType, size / 2);
+		absent = element(elementType, size * 2);
+	}
+
+	private ISet build(int from, int count) {
+		ISetWriter w = vf.setWriter(elementType(elementType));
+		for (int i = from; i < from + count; i++) {
+			w.insert(element(elementType, i));
+		}
+		return w.done();
+	}
+
+	@Benchmark
+	public ISet insert() {
+		return set.insert(absent);
+	}
+
+	@Benchmark
+	public ISet insertExisting() {
+		return set.insert(present);
+	}
+
+	@Benchmark
+	public ISet union() {
+		return set.union(other);
+	}
+
+	@Benchmark
+	public ISet intersect() {
+		return set.intersect(other);
+	}
+
+	@Benchmark
+	public ISet subtract() {
+		return set.subtract(other);
+	}
+
+	@Benchmark
+	public boolean containsHit() {
+		return set.contains(present);
+	}
+
+	@Benchmark
+	public boolean containsMiss() {
+		return set.contains(absent);
+	}
+
+	@Benchmark
+	public void iterate(Blackhole bh) {
+		for (IValue v : set) {
+			bh.consume(v);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IString;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a string of <code>pieces</code> short pieces by repeated
+ * IString.concat, as a template expander or pretty printer does, against
+ * the flat baseline of a StringBuilder followed by one vf.string.
+ *
+ * Repeated concat on a flat representation copies the whole prefix every
+ * time and is quadratic; a tree (rope) representation makes it linear. The
+ * substring, charAt and equality benchmarks then show what the concatenated
+ * result costs to use afterwards, compared to the flat string.
+ *
+ * "ascii" pieces are plain text, "emoji" pieces contain surrogate pairs, so
+ * code point indexing cannot be done by char offset.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StringConcatBenchmark extends AbstractValueBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int pieces;
+
+	@Param({"ascii", "emoji"})
+	public String content;
+
+	private IString[] parts;
+	private IString concatenated;
+	private IString flat;
+	private int length;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		parts = new IString[pieces];
+		for (int i = 0; i < pieces; i++) {
+			parts[i] = vf.string(piece(i));
+		}
+		concatenated = concat();
+		flat = flat();
+		length = flat.length();
+	}
+
+	private String piece(int i) {
+		if (content.equals("emoji")) {
+			return (i % 3 == 0) ? "🍝" + i : "x😀" + (i & 7);
+		}
+		return "p" + i + " ";
+	}
+
+	@Benchmark
+	public IString concat() {
+		IString result = vf.string("");
+		for (IString p : parts) {
+			result = result.concat(p);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public IString flat() {
+		StringBuilder b = new StringBuilder();
+		for (IString p : parts) {
+			b.append(p.getValue());
+		}
+		return vf.string(b.toString());
+	}
+
+	@Benchmark
+	public IString substringOfConcat() {
+		return concatenated.substring(length / 3, 2 * length / 3);
+	}
+
+	@Benchmark
+	public IString substringOfFlat() {
+		return flat.substring(length / 3, 2 * length / 3);
+	}
+
+	@Benchmark
+	public int charAtOfConcat() {
+		int sum = 0;
+		for (int i = 0; i < length; i += 1 + length / 64) {
+			sum += concatenated.charAt(i);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int charAtOfFlat() {
+		int sum = 0;
+		for (int i = 0; i < length; i += 1 + length / 64) {
+			sum += flat.charAt(i);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public boolean isEqualConcatFlat() {
+		return concatenated.isEqual(flat);
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IString;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A loop over every code point of a string with charAt(i), and length, on
+ * IString and on the java.lang.String it was made from.
+ *
+ * "ascii" text has no supplementary characters; in "emoji" text every
+ * fourth code point is one, so charAt cannot map code point index to char
+ * offset directly. An IString that scans from the start for every charAt
+ * makes the loop quadratic in <code>size</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StringIndexBenchmark extends AbstractValueBenchmark {
+	@Param({"100", "10000", "100000"})
+	public int size;
+
+	@Param({"ascii", "emoji"})
+	public String content;
+
+	private String text;
+	private IString string;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (content.equals("emoji") && i % 4 == 0) {
+				b.appendCodePoint(0x1F600 + (i & 0x3F));
+			}
+			else {
+				b.append((char) ('a' + i % 26));
+			}
+		}
+		text = b.toString();
+		string = vf.string(text);
+	}
+
+	@Benchmark
+	public int charAtLoop() {
+		int sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += string.charAt(i);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int codePointLoopString() {
+		int sum = 0;
+		for (int offset = 0; offset < text.length(); ) {
+			int cp = text.codePointAt(offset);
+			sum += cp;
+			offset += Character.charCount(cp);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int length() {
+		return string.length();
+	}
+
+	@Benchmark
+	public int lengthOfNewString() {
+		return vf.string(text).length();
+	}
+
+	@Benchmark
+	public int codePointCountString() {
+		return text.codePointCount(0, text.length());
+	}
+}
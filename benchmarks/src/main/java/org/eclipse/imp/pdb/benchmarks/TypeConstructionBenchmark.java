@@ -0,0 +1,80 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of tupleType and mapType from many threads at once, for types
+ * that already exist (a lookup in the factory's interning table) and for
+ * new ones (an insertion, which is the path that grows the table).
+ *
+ * Runs on 8 threads; compare with <code>-t 1</code> to see the contention.
+ * The "fresh" benchmarks keep creating types, so run them with a small heap
+ * (e.g. <code>-jvmArgs -Xmx256m</code>) to see whether dropped types are
+ * ever released.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(8)
+@Fork(1)
+public class TypeConstructionBenchmark {
+	@State(Scope.Thread)
+	public static class Local {
+		final TypeFactory tf = TypeFactory.getInstance();
+		Type[] atoms;
+		String prefix;
+		long next;
+
+		@Setup
+		public void setUp() {
+			atoms = new Type[] { tf.integerType(), tf.realType(), tf.stringType(), tf.boolType(), tf.sourceLocationType() };
+			prefix = "t" + System.identityHashCode(this) + "_";
+		}
+	}
+
+	@Benchmark
+	public Type existingTuple(Local l) {
+		Type[] a = l.atoms;
+		int i = (int) (l.next++ % a.length);
+		return l.tf.tupleType(a[i], a[(i + 1) % a.length], a[(i + 2) % a.length]);
+	}
+
+	@Benchmark
+	public Type existingMap(Local l) {
+		Type[] a = l.atoms;
+		int i = (int) (l.next++ % a.length);
+		return l.tf.mapType(a[i], l.tf.listType(a[(i + 1) % a.length]));
+	}
+
+	@Benchmark
+	public Type freshTuple(Local l) {
+		return l.tf.tupleType(l.atoms[0], l.prefix + l.next++, l.atoms[1], "b");
+	}
+
+	@Benchmark
+	public Type freshMap(Local l) {
+		return l.tf.mapType(l.atoms[2], l.prefix + l.next++, l.atoms[3], "v");
+	}
+}
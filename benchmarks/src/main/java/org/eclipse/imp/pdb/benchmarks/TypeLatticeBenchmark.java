@@ -0,0 +1,150 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.eclipse.imp.pdb.test.random.RandomTypeGenerator;
+import org.eclipse.imp.pdb.test.random.SplitMixRandom;
+import org.eclipse.imp.pdb.test.type.TypeLatticeCache;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays the loops of TestType.testIsSubtypeOf, testLub and testGlb over
+ * random types, computing every relation directly or through a
+ * {@link TypeLatticeCache} that lives for the whole trial, as it would in a
+ * type checker.
+ *
+ * In "cached" mode JMH also reports the {@link CacheCounters}: the cache's
+ * hits and misses during each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TypeLatticeBenchmark {
+	@Param({"100", "300"})
+	public int types;
+
+	@Param({"direct", "cached"})
+	public String mode;
+
+	private Type[] all;
+	private TypeLatticeCache cache;
+	private long hitsBefore;
+	private long missesBefore;
+
+	/**
+	 * Lookups the cache answered and lookups it had to compute in the
+	 * current iteration; the hit rate is hits / (hits + misses).
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class CacheCounters {
+		public long hits;
+		public long misses;
+	}
+
+	@Setup
+	public void setUp() {
+		TypeFactory tf = TypeFactory.getInstance();
+		RandomTypeGenerator rg = new RandomTypeGenerator(new SplitMixRandom(42));
+		all = new Type[types];
+		all[0] = tf.valueType();
+		all[1] = tf.voidType();
+		for (int i = 2; i < types; i++) {
+			all[i] = rg.next(10);
+		}
+		cache = mode.equals("cached") ? new TypeLatticeCache(1 << 20) : null;
+	}
+
+	@Setup(Level.Iteration)
+	public void startIteration() {
+		if (cache != null) {
+			hitsBefore = cache.hits();
+			missesBefore = cache.misses();
+		}
+	}
+
+	private void report(CacheCounters counters) {
+		if (cache != null) {
+			counters.hits = cache.hits() - hitsBefore;
+			counters.misses = cache.misses() - missesBefore;
+		}
+	}
+
+	private boolean sub(Type a, Type b) {
+		return cache == null ? a.isSubtypeOf(b) : cache.isSubtypeOf(a, b);
+	}
+
+	@Benchmark
+	public int subtypeTransitivity(CacheCounters counters) {
+		int count = 0;
+		for (Type t1 : all) {
+			for (Type t2 : all) {
+				if (sub(t1, t2)) {
+					for (Type t3 : all) {
+						if (sub(t2, t3) && sub(t1, t3)) {
+							count++;
+						}
+					}
+				}
+			}
+		}
+		report(counters);
+		return count;
+	}
+
+	@Benchmark
+	public int lubCommutativity(CacheCounters counters) {
+		int count = 0;
+		for (Type t1 : all) {
+			for (Type t2 : all) {
+				Type l1 = cache == null ? t1.lub(t2) : cache.lub(t1, t2);
+				Type l2 = cache == null ? t2.lub(t1) : cache.lub(t2, t1);
+				if (l1 == l2) {
+					count++;
+				}
+			}
+		}
+		report(counters);
+		return count;
+	}
+
+	@Benchmark
+	public int glbCommutativity(CacheCounters counters) {
+		int count = 0;
+		for (Type t1 : all) {
+			for (Type t2 : all) {
+				Type g1 = cache == null ? t1.glb(t2) : cache.glb(t1, t2);
+				Type g2 = cache == null ? t2.glb(t1) : cache.glb(t2, t1);
+				if (g1 == g2) {
+					count++;
+				}
+			}
+		}
+		report(counters);
+		return count;
+	}
+}
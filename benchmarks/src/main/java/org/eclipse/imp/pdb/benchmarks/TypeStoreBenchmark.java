@@ -0,0 +1,130 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+import org.eclipse.imp.pdb.test.type.ConcurrentTypeStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup and declaration throughput of a TypeStore shared by many threads.
+ *
+ * "synchronized" is a plain TypeStore with every call made under one
+ * monitor, which is what sharing one takes today; "concurrent" is a
+ * {@link ConcurrentTypeStore} without external locking. The lookup
+ * benchmark runs on 8 threads; the mixed group has 7 threads looking up
+ * while 1 keeps declaring new data types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TypeStoreBenchmark {
+	private static final int DECLARED = 1000;
+
+	@Param({"synchronized", "concurrent"})
+	public String store;
+
+	private final TypeFactory tf = TypeFactory.getInstance();
+	private final AtomicInteger next = new AtomicInteger();
+	private TypeStore ts;
+	private boolean lock;
+	private String[] names;
+	private String[] leaves;
+	private Type[] adts;
+	private Type args;
+
+	@Setup
+	public void setUp() {
+		lock = store.equals("synchronized");
+		ts = lock ? new TypeStore() : new ConcurrentTypeStore();
+		args = tf.tupleType(tf.integerType());
+		names = new String[DECLARED];
+		leaves = new String[DECLARED];
+		adts = new Type[DECLARED];
+		for (int i = 0; i < DECLARED; i++) {
+			names[i] = "A" + i;
+			leaves[i] = "leaf" + i;
+			adts[i] = declare(i);
+		}
+	}
+
+	private Type declare(int i) {
+		Type adt = tf.abstractDataType(ts, "A" + i);
+		tf.constructor(ts, adt, "leaf" + i, tf.integerType());
+		ts.declareAnnotation(adt, "pos", tf.sourceLocationType());
+		return adt;
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int i;
+	}
+
+	private Object lookup(Cursor c) {
+		int i = (c.i++ & Integer.MAX_VALUE) % DECLARED;
+		if (lock) {
+			synchronized (ts) {
+				return lookupUnlocked(i);
+			}
+		}
+		return lookupUnlocked(i);
+	}
+
+	private Object lookupUnlocked(int i) {
+		Type adt = ts.lookupAbstractDataType(names[i]);
+		ts.lookupConstructor(adt, leaves[i], args);
+		return ts.getAnnotations(adt);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Object lookupOnly(Cursor c) {
+		return lookup(c);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(7)
+	public Object mixedLookup(Cursor c) {
+		return lookup(c);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public Type mixedDeclare() {
+		int i = DECLARED + next.getAndIncrement();
+		if (lock) {
+			synchronized (ts) {
+				return declare(i);
+			}
+		}
+		return declare(i);
+	}
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.imp.pdb.facts.IValueFactory;
+
+/**
+ * Resolves the value factory a benchmark runs against.
+ * 
+ * The short names "fast" and "reference" select the two factories shipped
+ * with PDB; any other name is taken to be the fully qualified name of a
+ * class with a static <code>getInstance()</code> method, so new factories
+ * can be compared without touching the benchmarks
+ * (e.g. <code>-p factory=org.example.MyValueFactory</code>).
+ */
+public final class ValueFactories {
+	public static final String FAST = "fast";
+	public static final String REFERENCE = "reference";
+
+	private ValueFactories() {
+	}
+
+	public static IValueFactory forName(String name) {
+		switch (name) {
+		case FAST:
+			return org.eclipse.imp.pdb.facts.impl.fast.ValueFactory.getInstance();
+		case REFERENCE:
+			return org.eclipse.imp.pdb.facts.impl.reference.ValueFactory.getInstance();
+		default:
+			return reflectiveInstance(name);
+		}
+	}
+
+	private static IValueFactory reflectiveInstance(String className) {
+		try {
+			Method getInstance = Class.forName(className).getMethod("getInstance");
+			return (IValueFactory) getInstance.invoke(null);
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalArgumentException("Not a value factory: " + className, e);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.imp.pdb.facts.IList;
+import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk loading of rel[int,int] and lrel[int,int] through the writers, one
+ * element at a time against the array and iterable bulk operations.
+ *
+ * The tuples are made in advance, so only the writers are measured. 10^7
+ * tuples need a large heap, e.g. <code>-jvmArgs -Xmx8g</code>.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriterBenchmark extends AbstractValueBenchmark {
+	@Param({"100000", "1000000", "10000000"})
+	public int size;
+
+	private Type tupleType;
+	private IValue[] tuples;
+	private List<IValue> tupleList;
+
+	@Override
+	protected void setUp(IValueFactory factory) throws Exception {
+		super.setUp(factory);
+		tupleType = tf.tupleType(tf.integerType(), tf.integerType());
+		tuples = new IValue[size];
+		for (int i = 0; i < size; i++) {
+			tuples[i] = vf.tuple(vf.integer(i), vf.integer(i % 1000));
+		}
+		tupleList = Arrays.asList(tuples);
+	}
+
+	@Benchmark
+	public ISet setInsertEach() {
+		ISetWriter w = vf.setWriter(tupleType);
+		for (IValue t : tuples) {
+			w.insert(t);
+		}
+		return w.done();
+	}
+
+	@Benchmark
+	public ISet setInsertArray() {
+		ISetWriter w = vf.setWriter(tupleType);
+		w.insert(tuples);
+		return w.done();
+	}
+
+	@Benchmark
+	public ISet setInsertAll() {
+		ISetWriter w = vf.setWriter(tupleType);
+		w.insertAll(tupleList);
+		return w.done();
+	}
+
+	@Benchmark
+	public IList listAppendEach() {
+		IListWriter w = vf.listRelationWriter(tupleType);
+		for (IValue t : tuples) {
+			w.append(t);
+		}
+		return w.done();
+	}
+
+	@Benchmark
+	public IList listAppendArray() {
+		IListWriter w = vf.listRelationWriter(tupleType);
+		w.append(tuples);
+		return w.done();
+	}
+
+	@Benchmark
+	public IList listAppendAll() {
+		IListWriter w = vf.listRelationWriter(tupleType);
+		w.appendAll(tupleList);
+		return w.done();
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Calls an axiom through a method handle that is bound to the test object
+ * once, instead of through Method.invoke on every call.
+ * 
+ * Axioms of up to three arguments (all axioms so far) get an invoker that
+ * passes the arguments directly with invokeExact; longer ones fall back to
+ * invokeWithArguments. Exceptions thrown by the axiom propagate as is,
+ * without an InvocationTargetException around them.
+ */
+public abstract class AxiomInvoker {
+	protected final Method method;
+
+	private AxiomInvoker(Method method) {
+		this.method = method;
+	}
+
+	/**
+	 * @return an invoker for <code>m</code> on <code>target</code>, specialized for its arity
+	 */
+	public static AxiomInvoker bind(Object target, Method m) {
+		MethodHandle mh;
+		try {
+			m.setAccessible(true);
+			mh = MethodHandles.lookup().unreflect(m).bindTo(target);
+		}
+		catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Cannot access axiom " + m, e);
+		}
+
+		int arity = m.getParameterTypes().length;
+		MethodHandle generic = mh.asType(MethodType.genericMethodType(arity).changeReturnType(void.class));
+		switch (arity) {
+		case 0:
+			return new Arity0(m, generic);
+		case 1:
+			return new Arity1(m, generic);
+		case 2:
+			return new Arity2(m, generic);
+		case 3:
+			return new Arity3(m, generic);
+		default:
+			return new ArityN(m, generic);
+		}
+	}
+
+	/**
+	 * Calls the axiom with <code>args</code>, which has exactly one element
+	 * per parameter.
+	 */
+	public abstract void invoke(Object[] args) throws Throwable;
+
+	public Method getMethod() {
+		return method;
+	}
+
+	private static final class Arity0 extends AxiomInvoker {
+		private final MethodHandle mh;
+
+		Arity0(Method m, MethodHandle mh) {
+			super(m);
+			this.mh = mh;
+		}
+
+		@Override
+		public void invoke(Object[] args) throws Throwable {
+			mh.invokeExact();
+		}
+	}
+
+	private static final class Arity1 extends AxiomInvoker {
+		private final MethodHandle mh;
+
+		Arity1(Method m, MethodHandle mh) {
+			super(m);
+			this.mh = mh;
+		}
+
+		@Override
+		public void invoke(Object[] args) throws Throwable {
+			mh.invokeExact(args[0]);
+		}
+	}
+
+	private static final class Arity2 extends AxiomInvoker {
+		private final MethodHandle mh;
+
+		Arity2(Method m, MethodHandle mh) {
+			super(m);
+			this.mh = mh;
+		}
+
+		@Override
+		public void invoke(Object[] args) throws Throwable {
+			mh.invokeExact(args[0], args[1]);
+		}
+	}
+
+	private static final class Arity3 extends AxiomInvoker {
+		private final MethodHandle mh;
+
+		Arity3(Method m, MethodHandle mh) {
+			super(m);
+			this.mh = mh;
+		}
+
+		@Override
+		public void invoke(Object[] args) throws Throwable {
+			mh.invokeExact(args[0], args[1], args[2]);
+		}
+	}
+
+	private static final class ArityN extends AxiomInvoker {
+		private final MethodHandle mh;
+
+		ArityN(Method m, MethodHandle mh) {
+			super(m);
+			this.mh = mh;
+		}
+
+		@Override
+		public void invoke(Object[] args) throws Throwable {
+			mh.invokeWithArguments(args);
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.imp.pdb.test.random.DataGenerator;
+
+/**
+ * Runs an axiom over its argument space on a fork/join pool.
+ * 
+ * The values for the first argument are generated up front and partitioned
+ * into chunks; each chunk becomes an independent task that generates the
+ * remaining arguments from its own split of the data generator. Splits are
+ * made before any task is forked, and the number of chunks is fixed, so the
+ * arguments each task sees depend only on the seed: not on scheduling, and
+ * not on the number of threads. A run with one thread executes the same
+ * chunks in order on the calling thread, so a failure seen on any core
+ * count can be replayed there with the same seed.
+ * 
+ * Call counts are summed over all tasks. When an axiom fails the remaining
+ * tasks stop early, and the failure of the lowest-numbered failing chunk is
+ * reported with its arguments.
+ */
+class AxiomRunner {
+	/**
+	 * System property with the number of worker threads; 1 runs the
+	 * axioms sequentially on the calling thread, which is easier to debug.
+	 */
+	static final String THREADS_PROPERTY = "pdb.test.threads";
+
+	/**
+	 * Number of chunks the first argument's values are divided into; enough
+	 * for uneven chunks to balance over a typical number of workers.
+	 */
+	private static final int CHUNKS = 64;
+
+	/**
+	 * The pool, or null to run the chunks sequentially on the calling thread.
+	 */
+	private final ForkJoinPool pool;
+
+	AxiomRunner(int threads) {
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
+
+	static int configuredThreads() {
+		return Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+	}
+
+	void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Calls the axiom with every combination of up to <code>n</code>
+	 * generated values per argument (plus the static values), as the
+	 * sequential runner does.
+	 */
+	Result run(AxiomInvoker axiom, DataGenerator g, int n) {
+		long start = System.nanoTime();
+		Class<?>[] params = axiom.getMethod().getParameterTypes();
+
+		List<Object> firsts = new ArrayList<>();
+		for (Object t : g.generate(params[0], n)) {
+			firsts.add(t);
+		}
+
+		int chunkSize = Math.max(1, (firsts.size() + CHUNKS - 1) / CHUNKS);
+		AtomicBoolean failed = new AtomicBoolean(false);
+		List<Chunk> chunks = new ArrayList<>();
+		for (int from = 0; from < firsts.size(); from += chunkSize) {
+			List<Object> values = firsts.subList(from, Math.min(from + chunkSize, firsts.size()));
+			chunks.add(new Chunk(axiom, params, values, g.split(), n, failed));
+		}
+
+		if (pool != null) {
+			pool.invoke(new RunAll(chunks));
+		}
+		else {
+			for (Chunk c : chunks) {
+				c.compute();
+				if (failed.get()) {
+					break;
+				}
+			}
+		}
+
+		Result result = new Result(System.nanoTime() - start);
+		for (Chunk c : chunks) {
+			result.calls += c.calls;
+			result.busyNanos += c.busyNanos;
+			if (result.failure == null && c.failure != null) {
+				result.failure = c.failure;
+				result.failingArgs = c.failingArgs;
+			}
+		}
+		return result;
+	}
+
+	static class Result {
+		long calls;
+		final long wallNanos;
+		long busyNanos;
+		Throwable failure;
+		Object[] failingArgs;
+
+		Result(long wallNanos) {
+			this.wallNanos = wallNanos;
+		}
+
+		/**
+		 * @return time spent in the chunks over all threads, divided by
+		 * wall-clock time: how many workers were busy on average. This is not
+		 * the speedup, as fork/join overhead and contention count as busy
+		 * time; compare the wall time with a run at -Dpdb.test.threads=1 for
+		 * that.
+		 */
+		double utilization() {
+			return wallNanos == 0 ? 1.0 : (double) busyNanos / wallNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d calls in %d ms (%.1f workers busy)", calls, wallNanos / 1000000, utilization());
+		}
+	}
+
+	private static class RunAll extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<Chunk> chunks;
+
+		RunAll(List<Chunk> chunks) {
+			this.chunks = chunks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(chunks);
+		}
+	}
+
+	private static class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final AxiomInvoker axiom;
+		private final Class<?>[] params;
+		private final List<Object> firsts;
+		private final DataGenerator g;
+		private final int n;
+		private final AtomicBoolean failed;
+
+		long calls;
+		long busyNanos;
+		Throwable failure;
+		Object[] failingArgs;
+
+		Chunk(AxiomInvoker axiom, Class<?>[] params, List<Object> firsts, DataGenerator g, int n, AtomicBoolean failed) {
+			this.axiom = axiom;
+			this.params = params;
+			this.firsts = firsts;
+			this.g = g;
+			this.n = n;
+			this.failed = failed;
+		}
+
+		@Override
+		protected void compute() {
+			long start = System.nanoTime();
+			Object[] args = new Object[params.length];
+			try {
+				for (Object first : firsts) {
+					args[0] = first;
+					if (!call(args, 1)) {
+						break;
+					}
+				}
+			}
+			finally {
+				busyNanos = System.nanoTime() - start;
+			}
+		}
+
+		/**
+		 * @return false if this or another chunk failed and we should stop
+		 */
+		private boolean call(Object[] args, int k) {
+			if (failed.get()) {
+				return false;
+			}
+			if (k == params.length) {
+				try {
+					axiom.invoke(args);
+					calls++;
+					return true;
+				}
+				catch (Throwable e) {
+					fail(args, e);
+					return false;
+				}
+			}
+			for (Object t : g.generate(params[k], n)) {
+				args[k] = t;
+				if (!call(args, k + 1)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void fail(Object[] args, Throwable cause) {
+			failure = cause;
+			failingArgs = Arrays.copyOf(args, args.length);
+			failed.set(true);
+		}
+	}
+}
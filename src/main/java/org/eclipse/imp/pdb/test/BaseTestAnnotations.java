@@ -16,6 +16,7 @@ import junit.framework.TestCase;
 
 import org.eclipse.imp.pdb.facts.IConstructor;
 import org.eclipse.imp.pdb.facts.INode;
+import org.eclipse.imp.pdb.facts.ISet;
 import org.eclipse.imp.pdb.facts.IValue;
 import org.eclipse.imp.pdb.facts.IValueFactory;
 import org.eclipse.imp.pdb.facts.exceptions.FactTypeUseException;
@@ -148,6 +149,44 @@ public abstract class BaseTestAnnotations extends TestCase {
 		assertTrue(vf.set(vf.set(n)).isEqual(vf.set(vf.set(na))));
 	}
 	
+	/**
+	 * A tree of pair(E, E) and n(int) constructors; with <code>seed</code>
+	 * >= 0 every constructor gets an "x" annotation derived from it.
+	 */
+	private IValue tree(Type pair, int depth, int first, int seed) {
+		IConstructor c;
+		if (depth == 0) {
+			c = vf.constructor(N, vf.integer(first));
+		}
+		else {
+			c = vf.constructor(pair, tree(pair, depth - 1, 2 * first, seed), tree(pair, depth - 1, 2 * first + 1, seed));
+		}
+		return seed < 0 ? c : c.asAnnotatable().setAnnotation("x", vf.integer(seed * 1000003 + depth * 1009 + first));
+	}
+
+	public void testEqualityDeepAnnotations() {
+		Type pair = tf.constructor(ts, E, "pair", E, E);
+		IValue plain = tree(pair, 10, 0, -1);
+		IValue annotated = tree(pair, 10, 0, 1);
+		IValue reannotated = tree(pair, 10, 0, 2);
+
+		assertTrue(plain.isEqual(annotated));
+		assertTrue(annotated.isEqual(plain));
+		assertTrue(annotated.isEqual(reannotated));
+		assertEquals(plain.hashCode(), annotated.hashCode());
+		assertEquals(annotated.hashCode(), reannotated.hashCode());
+		assertFalse(annotated.isEqual(tree(pair, 10, 1, 1)));
+
+		ISet set = vf.set(plain).insert(annotated).insert(reannotated);
+		assertEquals(1, set.size());
+		assertTrue(set.contains(annotated));
+		assertTrue(vf.set(annotated).contains(plain));
+		assertTrue(vf.set(vf.set(annotated)).isEqual(vf.set(vf.set(plain))));
+		assertTrue(vf.set(vf.list(annotated)).isEqual(vf.set(vf.list(reannotated))));
+		assertTrue(vf.tuple(annotated, plain).isEqual(vf.tuple(plain, reannotated)));
+		assertTrue(vf.map(E, E).put(annotated, plain).containsKey(reannotated));
+	}
+
 	public void testNodeAnnotation() {
 		ts.declareAnnotation(tf.nodeType(), "foo", tf.boolType());
 		INode n = vf.node("hello");
@@ -1,10 +1,16 @@
 package org.eclipse.imp.pdb.test;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.eclipse.imp.pdb.facts.IInteger;
 import org.eclipse.imp.pdb.facts.INumber;
+import org.eclipse.imp.pdb.facts.IRational;
 import org.eclipse.imp.pdb.facts.IReal;
+import org.eclipse.imp.pdb.facts.IString;
 import org.eclipse.imp.pdb.facts.IValue;
 import org.eclipse.imp.pdb.facts.IValueFactory;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
@@ -96,10 +102,210 @@ abstract public class BaseTestBasicValues extends TestCase {
 	
 	
 	
+	/**
+	 * A long string built by many concats of pieces with surrogate pairs,
+	 * checked against java.lang.String by code point.
+	 */
+	public void testStringLongConcat() {
+		String[] pieces = { "🍝", "x", "é🍞", "", "abc", "🍝🍝y", "\uD83D\uDE00" };
+		StringBuilder expected = new StringBuilder();
+		IString built = vf.string("");
+		for (int i = 0; i < 3000; i++) {
+			String piece = pieces[(i * 7 + i / 5) % pieces.length];
+			expected.append(piece);
+			built = (i % 2 == 0) ? built.concat(vf.string(piece)) : built.concat(vf.string(piece).concat(vf.string("")));
+		}
+		String flat = expected.toString();
+		int length = flat.codePointCount(0, flat.length());
+
+		assertEquals(flat, built.getValue());
+		assertEquals(length, built.length());
+		assertTrue(built.isEqual(vf.string(flat)));
+		assertEquals(vf.string(flat).hashCode(), built.hashCode());
+
+		for (int i = 0; i < length; i += 97) {
+			assertEquals(flat.codePointAt(flat.offsetByCodePoints(0, i)), built.charAt(i));
+		}
+		assertEquals(flat.codePointBefore(flat.length()), built.charAt(length - 1));
+
+		for (int from = 0; from < length; from += 613) {
+			int to = Math.min(length, from + 1234);
+			String sub = flat.substring(flat.offsetByCodePoints(0, from), flat.offsetByCodePoints(0, to));
+			assertEqual(vf.string(sub), built.substring(from, to));
+		}
+
+		int first = length / 3;
+		int end = 2 * length / 3;
+		String spliced = flat.substring(0, flat.offsetByCodePoints(0, first)) + "🍞x" + flat.substring(flat.offsetByCodePoints(0, end));
+		assertEqual(vf.string(spliced), built.replace(first, first + 1, end, vf.string("🍞x")));
+
+		String reversed = new StringBuilder(flat).reverse().toString();
+		assertEqual(vf.string(reversed), built.reverse());
+	}
+
+	public void testStringCodePoints() {
+		StringBuilder mixed = new StringBuilder();
+		for (int i = 0; i < 5 * 64; i++) {
+			mixed.append(i % 5 == 0 ? "🍝" : i % 7 == 0 ? "é" : "x");
+		}
+		String bmpPrefix = new String(new char[3 * 64 + 5]).replace('\0', 'a') + mixed;
+
+		// unpaired surrogates count as one code point each, like String.codePointCount
+		for (String s : new String[] { "", "plain ascii", "🍝", "🍝x🍞", mixed.toString(), bmpPrefix, "a\uD83Cb🍞\uDF5D" }) {
+			IString str = vf.string(s);
+			int length = s.codePointCount(0, s.length());
+
+			assertEquals(length, str.length());
+			for (int i = 0; i < length; i++) {
+				assertEquals(s.codePointAt(s.offsetByCodePoints(0, i)), str.charAt(i));
+			}
+			for (int i = 0; i < length; i += 11) {
+				int end = Math.min(length, i + 2 * 64 + 3);
+				String expected = s.substring(s.offsetByCodePoints(0, i), s.offsetByCodePoints(0, end));
+				assertEqual(vf.string(expected), str.substring(i, end));
+			}
+		}
+	}
+
+	public void testStringConcatAssociative() {
+		IString a = vf.string("🍝a");
+		IString b = vf.string("b🍞");
+		IString c = vf.string("\uD83D\uDE00c");
+		IString left = a.concat(b).concat(c);
+		IString right = a.concat(b.concat(c));
+
+		assertEqual(left, right);
+		assertEquals(left.hashCode(), right.hashCode());
+		assertEquals(6, left.length());
+		assertEquals(0x1F35E, right.charAt(3));
+		assertEqual(vf.string("b🍞\uD83D\uDE00"), left.substring(2, 5));
+		assertEqual(vf.string("b🍞\uD83D\uDE00"), right.substring(2, 5));
+	}
+
 	public void testIntAddition() {
 		assertTrue(vf.integer(1).add(vf.integer(1)).isEqual(vf.integer(2)));
 	}
 	
+	/**
+	 * Arithmetic on every pair of integers around the int and long overflow
+	 * boundaries, against BigInteger. Results that fit in a small
+	 * representation must be equal, with equal hash codes, to the same
+	 * number made directly, however they were computed.
+	 */
+	public void testIntegerOverflowBoundaries() {
+		BigInteger two64 = BigInteger.ONE.shiftLeft(64);
+		String[] boundaries = {
+				"0", "1", "-1", "2", "-2", "127", "128", "-128", "-129", "1024",
+				"" + Integer.MAX_VALUE, "" + Integer.MIN_VALUE,
+				"" + ((long) Integer.MAX_VALUE + 1), "" + ((long) Integer.MIN_VALUE - 1),
+				"" + (1L << 32), "3037000499", "3037000500", "-3037000500",
+				"" + Long.MAX_VALUE, "" + Long.MIN_VALUE, "" + (Long.MAX_VALUE - 1), "" + (Long.MIN_VALUE + 1),
+				two64.toString(), two64.negate().toString()
+		};
+
+		for (String x : boundaries) {
+			BigInteger bx = new BigInteger(x);
+			IInteger a = vf.integer(x);
+			if (bx.bitLength() < 64) {
+				assertIntegerEquals(bx, vf.integer(bx.longValue()));
+			}
+			assertIntegerEquals(bx.negate(), a.negate());
+
+			for (String y : boundaries) {
+				BigInteger by = new BigInteger(y);
+				IInteger b = vf.integer(y);
+
+				assertIntegerEquals(bx.add(by), a.add(b));
+				assertIntegerEquals(bx.subtract(by), a.subtract(b));
+				assertIntegerEquals(bx.multiply(by), a.multiply(b));
+				assertEquals(Integer.signum(bx.compareTo(by)), Integer.signum(a.compare(b)));
+				assertEquals(bx.compareTo(by) < 0, a.less(b).getValue());
+
+				if (by.signum() != 0) {
+					assertEqual(a, a.divide(b).multiply(b).add(a.remainder(b)));
+					if (bx.signum() >= 0 && by.signum() > 0) {
+						assertIntegerEquals(bx.divide(by), a.divide(b));
+						assertIntegerEquals(bx.remainder(by), a.remainder(b));
+					}
+				}
+			}
+		}
+
+		// results that come back into range after passing through a big value
+		IInteger max = vf.integer(Long.MAX_VALUE);
+		IInteger one = vf.integer(1);
+		assertIntegerEquals(BigInteger.valueOf(Long.MAX_VALUE), max.add(one).subtract(one));
+		assertIntegerEquals(BigInteger.ZERO, max.multiply(max).subtract(max.multiply(max)));
+		assertIntegerEquals(BigInteger.valueOf(Long.MIN_VALUE), vf.integer(Long.MIN_VALUE).negate().negate());
+	}
+
+	private void assertIntegerEquals(BigInteger expected, IInteger actual) {
+		IInteger direct = vf.integer(expected.toString());
+		assertEquals(expected.toString(), actual.toString());
+		assertEqual(direct, actual);
+		assertTrue(actual.isEqual(direct));
+		assertEquals(direct.hashCode(), actual.hashCode());
+	}
+
+	/**
+	 * Rational arithmetic on numerators and denominators around the long
+	 * overflow boundary, against normalized BigInteger fractions.
+	 */
+	public void testRationalOverflowBoundaries() {
+		long[] boundaries = {
+				0, 1, -1, 2, -3, 6, Integer.MAX_VALUE, Integer.MIN_VALUE, 1L << 32,
+				3037000499L, -(1L << 62), Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1
+		};
+
+		List<IRational> values = new ArrayList<>();
+		List<BigInteger[]> expected = new ArrayList<>();
+		for (long n : boundaries) {
+			for (long d : boundaries) {
+				if (d != 0) {
+					BigInteger[] f = fraction(BigInteger.valueOf(n), BigInteger.valueOf(d));
+					IRational r = vf.rational(n, d);
+					assertRationalEquals(f, r);
+					values.add(r);
+					expected.add(f);
+				}
+			}
+		}
+
+		for (int i = 0; i < values.size(); i += 3) {
+			for (int j = 0; j < values.size(); j += 5) {
+				IRational a = values.get(i);
+				IRational b = values.get(j);
+				BigInteger[] x = expected.get(i);
+				BigInteger[] y = expected.get(j);
+
+				assertRationalEquals(fraction(x[0].multiply(y[1]).add(y[0].multiply(x[1])), x[1].multiply(y[1])), a.add(b));
+				assertRationalEquals(fraction(x[0].multiply(y[1]).subtract(y[0].multiply(x[1])), x[1].multiply(y[1])), a.subtract(b));
+				assertRationalEquals(fraction(x[0].multiply(y[0]), x[1].multiply(y[1])), a.multiply(b));
+				if (y[0].signum() != 0) {
+					assertRationalEquals(fraction(x[0].multiply(y[1]), x[1].multiply(y[0])), a.divide(b));
+				}
+				int cmp = x[0].multiply(y[1]).compareTo(y[0].multiply(x[1]));
+				assertEquals(Integer.signum(cmp), Integer.signum(a.compare(b)));
+			}
+		}
+	}
+
+	private static BigInteger[] fraction(BigInteger n, BigInteger d) {
+		BigInteger gcd = n.gcd(d);
+		if (d.signum() < 0) {
+			gcd = gcd.negate();
+		}
+		return new BigInteger[] { n.divide(gcd), d.divide(gcd) };
+	}
+
+	private void assertRationalEquals(BigInteger[] expected, IRational actual) {
+		assertEquals(expected[0].toString(), actual.numerator().toString());
+		assertEquals(expected[1].toString(), actual.denominator().toString());
+		IRational direct = vf.rational(vf.integer(expected[0].toString()), vf.integer(expected[1].toString()));
+		assertEqual(direct, actual);
+		assertEquals(direct.hashCode(), actual.hashCode());
+	}
+
 	public void testReal() {
 		assertTrue(vf.real("1.5").floor().isEqual(vf.real("1")));
 		assertTrue(vf.real("1.5").round().isEqual(vf.real("2")));
@@ -164,4 +370,32 @@ abstract public class BaseTestBasicValues extends TestCase {
 		IReal r9 = vf.real("9");
 		assertTrue(e100.subtract(e100.divide(r9,80*80).multiply(r9)).lessEqual(maxDiff).getValue());
 	}
+
+	/**
+	 * Real arithmetic is exact decimal arithmetic, also when every operand is
+	 * a double: results that a double cannot hold must not be rounded to one.
+	 */
+	public void testRealExactArithmetic() {
+		assertTrue(vf.real("0.1").add(vf.real("0.2")).equal(vf.real("0.3")).getValue());
+		assertTrue(vf.real(0.5).add(vf.real(0.25)).equal(vf.real(0.75)).getValue());
+		assertTrue(vf.real(3.0).multiply(vf.real(0.5)).equal(vf.real(1.5)).getValue());
+
+		// beyond the range of double
+		assertTrue(vf.real(1e300).multiply(vf.real(1e300)).equal(vf.real("1E600")).getValue());
+		assertTrue(vf.real(Double.MIN_VALUE).multiply(vf.real(Double.MIN_VALUE)).greater(vf.real(0.0)).getValue());
+
+		// beyond the precision of double
+		IReal tiny = vf.real(1e-30);
+		assertFalse(vf.real(1.0).add(tiny).equal(vf.real(1.0)).getValue());
+		assertTrue(vf.real(1.0).add(tiny).subtract(vf.real(1.0)).equal(tiny).getValue());
+		IReal big = vf.real(1L << 53);
+		assertTrue(big.add(vf.real(1.0)).subtract(big).equal(vf.real(1.0)).getValue());
+
+		// a long chain of double-valued steps stays exact
+		IReal sum = vf.real(0.0);
+		for (int i = 0; i < 1000; i++) {
+			sum = sum.add(vf.real(0.1));
+		}
+		assertTrue(sum.equal(vf.real(0.1).multiply(vf.real(1000.0))).getValue());
+	}
 }
@@ -14,8 +14,17 @@ package org.eclipse.imp.pdb.test;
 
 import junit.framework.TestCase;
 
+import org.eclipse.imp.pdb.facts.IConstructor;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.IValue;
 import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.Type;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+import org.eclipse.imp.pdb.test.random.RandomSeed;
+import org.eclipse.imp.pdb.test.random.RandomTypeGenerator;
+import org.eclipse.imp.pdb.test.random.RandomValueGenerator;
+import org.eclipse.imp.pdb.test.random.SplitMixRandom;
 
 // TODO: this class could use more tests
 public abstract class BaseTestEquality extends TestCase {
@@ -79,5 +88,96 @@ public abstract class BaseTestEquality extends TestCase {
 		assertTrue(vf.set(vf.set(tf.voidType())).isEqual(vf.set(vf.set(tf.integerType()))));
 		assertTrue(vf.set(vf.set(tf.realType())).isEqual(vf.set(vf.set(tf.integerType()))));
 	}
-	
-}
\ No newline at end of file
+
+	/**
+	 * Two generators started from the same seed build equal, but separately
+	 * allocated, values; those must be equal and hash alike.
+	 */
+	public void testRandomValues() {
+		TypeStore ts = new TypeStore();
+		RandomTypeGenerator types = new RandomTypeGenerator(RandomSeed.root());
+
+		for (int i = 0; i < 200; i++) {
+			Type type = types.next(4);
+			long seed = RandomSeed.get() + i;
+			RandomValueGenerator left = new RandomValueGenerator(vf, ts, type, new SplitMixRandom(seed));
+			RandomValueGenerator right = new RandomValueGenerator(vf, ts, type, new SplitMixRandom(seed));
+
+			for (int j = 0; j < 5; j++) {
+				IValue a = left.next();
+				IValue b = right.next();
+				assertTrue(a.isEqual(a));
+				assertTrue(a + " : " + type + ", " + RandomSeed.describe(), a.isEqual(b));
+				assertTrue(b.isEqual(a));
+				assertEquals(a.hashCode(), b.hashCode());
+			}
+		}
+	}
+
+	/**
+	 * Balanced binary trees of 2^depth leaves; leaf <code>changed</code>
+	 * (or none, when it is -1) gets a different value.
+	 */
+	private IValue tree(Type leaf, Type bin, int depth, int first, int changed) {
+		if (depth == 0) {
+			return vf.constructor(leaf, vf.integer(first == changed ? -1 : first));
+		}
+		int half = 1 << (depth - 1);
+		return vf.constructor(bin, tree(leaf, bin, depth - 1, first, changed), tree(leaf, bin, depth - 1, first + half, changed));
+	}
+
+	/**
+	 * Replaces leaf <code>index</code> of a tree made by tree(), sharing
+	 * every subtree off the path to it.
+	 */
+	private IValue replaceLeaf(IValue tree, int depth, int index, IValue newLeaf) {
+		if (depth == 0) {
+			return newLeaf;
+		}
+		IConstructor c = (IConstructor) tree;
+		int half = 1 << (depth - 1);
+		if (index < half) {
+			return c.set(0, replaceLeaf(c.get(0), depth - 1, index, newLeaf));
+		}
+		return c.set(1, replaceLeaf(c.get(1), depth - 1, index - half, newLeaf));
+	}
+
+	public void testDeepValues() {
+		TypeStore ts = new TypeStore();
+		Type tree = tf.abstractDataType(ts, "Tree");
+		Type leaf = tf.constructor(ts, tree, "leaf", tf.integerType());
+		Type bin = tf.constructor(ts, tree, "bin", tree, tree);
+		int depth = 14;
+		int leaves = 1 << depth;
+
+		IValue a = tree(leaf, bin, depth, 0, -1);
+		// built independently; a hash-consing factory may return the same
+		// object, otherwise isEqual has to compare the two trees node by node
+		IValue b = tree(leaf, bin, depth, 0, -1);
+		assertTrue(a.isEqual(b));
+		assertEquals(a.hashCode(), b.hashCode());
+
+		for (int changed : new int[] { 0, leaves / 2 - 1, leaves / 2, leaves - 1 }) {
+			IValue c = tree(leaf, bin, depth, 0, changed);
+			assertFalse("leaf " + changed, a.isEqual(c));
+			assertFalse("leaf " + changed, c.isEqual(a));
+
+			// equal again after changing the leaf back, sharing everything else
+			IValue restored = replaceLeaf(c, depth, changed, vf.constructor(leaf, vf.integer(changed)));
+			assertTrue("leaf " + changed, restored.isEqual(a));
+			assertEquals(a.hashCode(), restored.hashCode());
+
+			IValue shared = replaceLeaf(a, depth, changed, vf.constructor(leaf, vf.integer(-1)));
+			assertTrue(shared.isEqual(c));
+			assertFalse(shared.isEqual(a));
+		}
+
+		ISet set = vf.set(a, tree(leaf, bin, depth, 0, 7));
+		assertEquals(2, set.size());
+		assertTrue(set.contains(b));
+		assertTrue(set.contains(tree(leaf, bin, depth, 0, 7)));
+		assertFalse(set.contains(tree(leaf, bin, depth, 0, 8)));
+		assertTrue(vf.list(a, a).isEqual(vf.list(b, a)));
+		assertTrue(vf.set(vf.set(a)).isEqual(vf.set(vf.set(b))));
+	}
+}
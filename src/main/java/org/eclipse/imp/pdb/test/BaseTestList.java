@@ -12,12 +12,14 @@
 
 package org.eclipse.imp.pdb.test;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import junit.framework.TestCase;
 
 import org.eclipse.imp.pdb.facts.IList;
 import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.ITuple;
 import org.eclipse.imp.pdb.facts.IValue;
 import org.eclipse.imp.pdb.facts.IValueFactory;
 import org.eclipse.imp.pdb.facts.exceptions.FactTypeUseException;
@@ -289,6 +291,54 @@ public abstract class BaseTestList extends TestCase {
 			fail("12312 subtract 123213213 should be empty");
 	}
 	
+	/**
+	 * Bulk appends, from an array or any iterable, build the same list as
+	 * appending one element at a time.
+	 */
+	public void testBulkAppend() {
+		IListWriter single = vf.listWriter(tf.integerType());
+		for (IValue v : integers) {
+			single.append(v);
+		}
+		IList expected = single.done();
+		assertTrue(expected.isEqual(integerList));
+
+		IListWriter array = vf.listWriter(tf.integerType());
+		array.append(integers);
+		assertTrue(array.done().isEqual(expected));
+
+		IListWriter iterable = vf.listWriter(tf.integerType());
+		iterable.appendAll(Arrays.asList(integers));
+		assertTrue(iterable.done().isEqual(expected));
+
+		IListWriter fromList = vf.listWriter(tf.integerType());
+		fromList.appendAll(integerList);
+		assertTrue(fromList.done().isEqual(expected));
+
+		IListWriter mixed = vf.listWriter(tf.integerType());
+		mixed.appendAll(Arrays.asList(integers).subList(0, 10));
+		mixed.append(integers[10]);
+		mixed.append(Arrays.copyOfRange(integers, 11, integers.length));
+		assertTrue(mixed.done().isEqual(expected));
+
+		IListWriter empty = vf.listWriter(tf.integerType());
+		empty.appendAll(emptyIntegerList);
+		empty.append(new IValue[0]);
+		assertTrue(empty.done().isEqual(emptyIntegerList));
+
+		ITuple[] tuples = new ITuple[integers.length];
+		IListWriter singleTuples = vf.listRelationWriter(tf.tupleType(tf.integerType(), tf.integerType()));
+		for (int i = 0; i < integers.length; i++) {
+			tuples[i] = vf.tuple(integers[i], integers[integers.length - 1 - i]);
+			singleTuples.append(tuples[i]);
+		}
+		IListWriter bulkTuples = vf.listRelationWriter(tf.tupleType(tf.integerType(), tf.integerType()));
+		bulkTuples.appendAll(Arrays.asList(tuples));
+		IList relation = bulkTuples.done();
+		assertTrue(relation.isEqual(singleTuples.done()));
+		assertEquals(2, relation.asRelation().arity());
+	}
+
 	private boolean checkListEquality(IList lst1, IList lst2){
 		return lst1.isSubListOf(lst2) && lst2.isSubListOf(lst2);
 		
@@ -13,6 +13,7 @@
 package org.eclipse.imp.pdb.test;
 
 import java.util.Iterator;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -24,6 +25,8 @@ import org.eclipse.imp.pdb.facts.IValueFactory;
 import org.eclipse.imp.pdb.facts.exceptions.FactTypeUseException;
 import org.eclipse.imp.pdb.facts.type.Type;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.eclipse.imp.pdb.test.relational.HashJoinCompose;
+import org.eclipse.imp.pdb.test.relational.JoinIndex;
 
 public abstract class BaseTestListRelation extends TestCase {
     private IValueFactory vf;
@@ -242,6 +245,44 @@ public abstract class BaseTestListRelation extends TestCase {
 		}
 	}
 
+	public void testHashJoinCompose() {
+		assertTrue(HashJoinCompose.compose(vf, integerListRelation, integerListRelation).isEqual(integerListRelation.asRelation().compose(integerListRelation.asRelation())));
+
+		IList rel1 = vf.listRelation(vf.tuple(integers[0], doubles[0]), vf.tuple(integers[1], doubles[1]), vf.tuple(integers[2], doubles[2]));
+		IList rel2 = vf.listRelation(vf.tuple(doubles[0], integers[0]), vf.tuple(doubles[1], integers[1]), vf.tuple(doubles[2], integers[2]));
+		assertTrue(HashJoinCompose.compose(vf, rel1, rel2).isEqual(rel1.asRelation().compose(rel2.asRelation())));
+
+		try {
+			HashJoinCompose.compose(vf, vf.listRelation(vf.tuple(doubles[0], doubles[0])), rel1);
+			fail("relations should not be composable");
+		}
+		catch (FactTypeUseException e) {
+			// this should happen
+		}
+
+		Random rnd = new Random(42);
+		for (int nodes = 2; nodes <= 256; nodes *= 2) {
+			IList right = randomListRelation(rnd, nodes, nodes * 2);
+			JoinIndex index = JoinIndex.build(right, 2);
+
+			for (int k = 0; k < 5; k++) {
+				IList left = randomListRelation(rnd, nodes, nodes + rnd.nextInt(nodes));
+				IList expected = left.asRelation().compose(right.asRelation());
+
+				assertTrue("compose differs on " + left + " o " + right, HashJoinCompose.compose(vf, left, right).isEqual(expected));
+				assertTrue("compose with cached index differs on " + left + " o " + right, HashJoinCompose.compose(vf, left, index).isEqual(expected));
+			}
+		}
+	}
+
+	private IList randomListRelation(Random rnd, int nodes, int edges) {
+		IListWriter w = vf.listRelationWriter(tf.tupleType(tf.integerType(), tf.integerType()));
+		for (int i = 0; i < edges; i++) {
+			w.append(vf.tuple(vf.integer(rnd.nextInt(nodes)), vf.integer(rnd.nextInt(nodes))));
+		}
+		return w.done();
+	}
+
 	public void testContains() {
 		try {
 			for (ITuple t : integerTuples) {
@@ -287,6 +287,60 @@ public abstract class BaseTestMap extends TestCase {
 		}
 	}
 	
+	/**
+	 * Every intermediate version of a map built by successive puts stays
+	 * intact, also across keys whose hashes collide.
+	 */
+	public void testPersistentVersions() {
+		IString[] keys = new IString[1000];
+		String[] colliding = { "Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB" };
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = vf.string(i < colliding.length ? colliding[i] : "key" + i);
+		}
+
+		IMap[] versions = new IMap[keys.length + 1];
+		versions[0] = vf.map(unlabeledMapType);
+		for (int i = 0; i < keys.length; i++) {
+			versions[i + 1] = versions[i].put(keys[i], vf.string("v" + i));
+		}
+
+		for (int v = 0; v < versions.length; v += 37) {
+			IMap map = versions[v];
+			assertEquals(v, map.size());
+			for (int i = 0; i < keys.length; i++) {
+				if (i < v) {
+					assertEquals(vf.string("v" + i), map.get(keys[i]));
+				}
+				else {
+					assertFalse(map.containsKey(keys[i]));
+				}
+			}
+		}
+
+		IMap full = versions[keys.length];
+		IMap overwritten = full.put(keys[0], vf.string("new"));
+		assertEquals(vf.string("new"), overwritten.get(keys[0]));
+		assertEquals(vf.string("v0"), full.get(keys[0]));
+		assertEquals(full.size(), overwritten.size());
+
+		for (int i = 0; i < colliding.length; i++) {
+			IMap removed = full.remove(vf.map(unlabeledMapType).put(keys[i], vf.string("v" + i)));
+			assertFalse(removed.containsKey(keys[i]));
+			assertEquals(full.size() - 1, removed.size());
+			assertTrue(full.containsKey(keys[i]));
+			for (int j = 0; j < colliding.length; j++) {
+				if (j != i) {
+					assertEquals(vf.string("v" + j), removed.get(keys[j]));
+				}
+			}
+		}
+
+		assertTrue(versions[10].isEqual(vf.map(unlabeledMapType).put(keys[9], vf.string("v9")).put(keys[8], vf.string("v8"))
+				.put(keys[7], vf.string("v7")).put(keys[6], vf.string("v6")).put(keys[5], vf.string("v5"))
+				.put(keys[4], vf.string("v4")).put(keys[3], vf.string("v3")).put(keys[2], vf.string("v2"))
+				.put(keys[1], vf.string("v1")).put(keys[0], vf.string("v0"))));
+	}
+
 	public void testLabelsIO(){
 		try{
 			for(int i = 0; i < testValues.length; i++){
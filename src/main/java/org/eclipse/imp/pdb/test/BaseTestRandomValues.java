@@ -15,10 +15,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import junit.framework.AssertionFailedError;
@@ -70,6 +70,11 @@ abstract public class BaseTestRandomValues extends TestCase {
 	protected List<IRational> ratTestSet;
 	protected List<IReal> realTestSet;
 	private DataGenerator generator;
+	/**
+	 * Root of all random streams of this test; derived from the run's seed,
+	 * so a failure can be reproduced by rerunning with the printed seed.
+	 */
+	protected SplitMixRandom random;
 	protected List<INumber> mixedTestSet;
 	protected static final boolean noisy = true;
 	protected void setUp(IValueFactory factory) throws Exception {
@@ -112,10 +117,11 @@ abstract public class BaseTestRandomValues extends TestCase {
 		mixedTestSet.addAll(intTestSet);
 		mixedTestSet.addAll(ratTestSet);
 		mixedTestSet.addAll(realTestSet);
+		random = RandomSeed.root();
 		generator = new DataGenerator();
-		generator.addGenerator(IInteger.class, intTestSet, new RandomIntegerGenerator(vf));
-		generator.addGenerator(IRational.class, ratTestSet, new RandomRationalGenerator(vf));
-		generator.addGenerator(IReal.class, realTestSet, new RandomRealGenerator(vf));
+		generator.addGenerator(IInteger.class, intTestSet, new RandomIntegerGenerator(vf, random.split()));
+		generator.addGenerator(IRational.class, ratTestSet, new RandomRationalGenerator(vf, random.split()));
+		generator.addGenerator(IReal.class, realTestSet, new RandomRealGenerator(vf, random.split()));
 	}
 
 
@@ -193,22 +199,28 @@ abstract public class BaseTestRandomValues extends TestCase {
 
 	public void testIO() throws IOException {
 		if(noisy)
-			System.out.println("Test I/O: " + "(" + getClass().getPackage().getName() + ")");
+			System.out.println("Test I/O: " + "(" + getClass().getPackage().getName() + ", " + RandomSeed.describe() + ")");
 
-		ioHelperBin("PBF", new BinaryValueReader(), new BinaryValueWriter());
-		ioHelperText("Text", new StandardTextReader(), new StandardTextWriter());
+		try {
+			ioHelperBin("PBF", new BinaryValueReader(), new BinaryValueWriter());
+			ioHelperText("Text", new StandardTextReader(), new StandardTextWriter());
+		}
+		catch(IOException | RuntimeException | AssertionFailedError e) {
+			System.err.println("FAIL with " + RandomSeed.describe());
+			throw e;
+		}
 	}
 
 	private void ioHelperText(String io, IValueTextReader reader, IValueTextWriter writer) throws IOException {
-	  ioHelperText2(io + " Integers", reader, writer, new DataGenerator(generator, INumber.class, intTestSet, new RandomIntegerGenerator(vf)));
-	  ioHelperText2(io + " Rationals", reader, writer, new DataGenerator(generator, INumber.class, ratTestSet, new RandomRationalGenerator(vf)));
-	  ioHelperText2(io + " Reals", reader, writer, new DataGenerator(generator, INumber.class, realTestSet, new RandomRealGenerator(vf)));
+	  ioHelperText2(io + " Integers", reader, writer, new DataGenerator(generator, INumber.class, intTestSet, new RandomIntegerGenerator(vf, random.split())));
+	  ioHelperText2(io + " Rationals", reader, writer, new DataGenerator(generator, INumber.class, ratTestSet, new RandomRationalGenerator(vf, random.split())));
+	  ioHelperText2(io + " Reals", reader, writer, new DataGenerator(generator, INumber.class, realTestSet, new RandomRealGenerator(vf, random.split())));
 	}
 	
 	private void ioHelperBin(String io, IValueBinaryReader reader, IValueBinaryWriter writer) throws IOException {
-	  ioHelperBin2(io + " Integers", reader, writer, new DataGenerator(generator, INumber.class, intTestSet, new RandomIntegerGenerator(vf)));
-	  ioHelperBin2(io + " Rationals", reader, writer, new DataGenerator(generator, INumber.class, ratTestSet, new RandomRationalGenerator(vf)));
-	  ioHelperBin2(io + " Reals", reader, writer, new DataGenerator(generator, INumber.class, realTestSet, new RandomRealGenerator(vf)));
+	  ioHelperBin2(io + " Integers", reader, writer, new DataGenerator(generator, INumber.class, intTestSet, new RandomIntegerGenerator(vf, random.split())));
+	  ioHelperBin2(io + " Rationals", reader, writer, new DataGenerator(generator, INumber.class, ratTestSet, new RandomRationalGenerator(vf, random.split())));
+	  ioHelperBin2(io + " Reals", reader, writer, new DataGenerator(generator, INumber.class, realTestSet, new RandomRealGenerator(vf, random.split())));
 	}
 	
 	
@@ -261,48 +273,101 @@ abstract public class BaseTestRandomValues extends TestCase {
 	 * with names starting with "axiom".
 	 * 
 	 * Constructs argument lists using the data generator, and calls
-	 * the axioms using reflection.
+	 * the axioms through method handles (see {@link AxiomInvoker}). The argument lists are partitioned
+	 * over -Dpdb.test.threads workers (default: one per processor).
 	 * 
 	 * @throws Throwable
 	 */
 	public void testAxioms() throws Throwable {
 		if(noisy)
-			System.out.println("Test Axioms: " + "(" + getClass().getPackage().getName() + ")");
+			System.out.println("Test Axioms: " + "(" + getClass().getPackage().getName() + ", " + RandomSeed.describe() + ")");
+		try {
+			runAxioms();
+		}
+		catch(Throwable e) {
+			System.err.println("FAIL with " + RandomSeed.describe());
+			throw e;
+		}
+	}
+
+	/**
+	 * Orders methods by name, then by parameter types. getMethods() returns
+	 * them in no particular order, and every axiom takes the next streams of
+	 * the shared generators, so the order must be fixed for a seed to
+	 * reproduce a run.
+	 */
+	private static final Comparator<Method> BY_SIGNATURE = new Comparator<Method>() {
+		@Override
+		public int compare(Method a, Method b) {
+			int byName = a.getName().compareTo(b.getName());
+			if (byName != 0) {
+				return byName;
+			}
+			return Arrays.toString(a.getParameterTypes()).compareTo(Arrays.toString(b.getParameterTypes()));
+		}
+	};
+
+	private void runAxioms() throws Throwable {
 		Method[] methods = getClass().getMethods();
+		Arrays.sort(methods, BY_SIGNATURE);
 		long millis = System.currentTimeMillis();
-		for(Method m : methods) {
-			if(m.getName().startsWith("axiom")) {
-				Class<?>[] params = m.getParameterTypes();
-				// if at least one argument is an INumber, we want to
-				// test the axiom for all numeric types
-				if(hasINumber(params)) {
-					if(noisy)
-						System.out.print(m.getName() + "\n  Integers:  ");
-					callAxiom(m, params, new Object[params.length], 0,
-							new DataGenerator(generator, INumber.class, intTestSet, new RandomIntegerGenerator(vf)));
-					if(noisy)
-						System.out.print(" " + count + " calls\n" + m.getName() + "\n  Rationals: ");
-					callAxiom(m, params, new Object[params.length], 0,
-							new DataGenerator(generator, INumber.class, ratTestSet, new RandomRationalGenerator(vf)));
-					if(noisy)
-						System.out.print(" " + count + " calls\n" + m.getName() + "\n  Reals:     ");
-					callAxiom(m, params, new Object[params.length], 0,
-							new DataGenerator(generator, INumber.class, realTestSet, new RandomRealGenerator(vf)));
-					if(noisy)
-						System.out.print(" " + count + " calls\n" + m.getName() + "\n  Mixed:     ");
-					callAxiom(m, params, new Object[params.length], 0, 
-							new DataGenerator(generator, INumber.class, mixedTestSet, new RandomNumberGenerator(vf)));
-				}
-				else {
-					if(noisy) System.out.print(m.getName() + "\n          :  ");
-					callAxiom(m, params, new Object[params.length], 0, generator);
+		int threads = AxiomRunner.configuredThreads();
+		AxiomRunner runner = new AxiomRunner(threads);
+		try {
+			for(Method m : methods) {
+				if(m.getName().startsWith("axiom")) {
+					Class<?>[] params = m.getParameterTypes();
+					AxiomInvoker axiom = AxiomInvoker.bind(this, m);
+					// if at least one argument is an INumber, we want to
+					// test the axiom for all numeric types
+					if(hasINumber(params)) {
+						runAxiom(runner, axiom, "Integers:  ",
+								new DataGenerator(generator, INumber.class, intTestSet, new RandomIntegerGenerator(vf, random.split())));
+						runAxiom(runner, axiom, "Rationals: ",
+								new DataGenerator(generator, INumber.class, ratTestSet, new RandomRationalGenerator(vf, random.split())));
+						runAxiom(runner, axiom, "Reals:     ",
+								new DataGenerator(generator, INumber.class, realTestSet, new RandomRealGenerator(vf, random.split())));
+						runAxiom(runner, axiom, "Mixed:     ",
+								new DataGenerator(generator, INumber.class, mixedTestSet, new RandomNumberGenerator(vf, random.split())));
+					}
+					else {
+						runAxiom(runner, axiom, "        :  ", generator);
+					}
 				}
-				if(noisy)
-					System.out.println(" " + count + " calls");
 			}
 		}
+		finally {
+			runner.shutdown();
+		}
 		System.out.println("Axiom tests done in " + (System.currentTimeMillis()-millis) + " ms "
-				+ "(" + getClass().getPackage().getName() + ")");
+				+ "(" + getClass().getPackage().getName() + ", " + threads + " threads)");
+	}
+
+	/**
+	 * Runs one axiom over one data set on the runner. The arguments do not
+	 * depend on the number of threads, so set -Dpdb.test.threads=1 to debug
+	 * a failing axiom sequentially with the same seed.
+	 */
+	private void runAxiom(AxiomRunner runner, AxiomInvoker axiom, String label, DataGenerator g)
+			throws Throwable {
+		Method m = axiom.getMethod();
+		Class<?>[] params = m.getParameterTypes();
+		if(noisy)
+			System.out.print(m.getName() + "\n  " + label);
+		if(params.length == 0) {
+			callAxiom(axiom, params, new Object[params.length], 0, g);
+			if(noisy)
+				System.out.println(" " + count + " calls");
+		}
+		else {
+			AxiomRunner.Result result = runner.run(axiom, g, numberOfValuesFor(params.length));
+			if(noisy)
+				System.out.println(" " + result);
+			if(result.failure != null) {
+				System.err.println("FAIL: " + m.getName() + "(" + Arrays.toString(result.failingArgs) + ")");
+				throw result.failure;
+			}
+		}
 	}
 
 	private boolean hasINumber(Class<?>[] params) {
@@ -320,31 +385,26 @@ abstract public class BaseTestRandomValues extends TestCase {
 	private int count = 0;
 	
 	/**
-	 * @param m The axiom method
+	 * @param axiom The axiom, bound to this test
 	 * @param params The list of parameter types
 	 * @param args The argument list we've built so far
 	 * @param k The number of arguments we've added so far
 	 * @param g The data generator
 	 * @throws Throwable if anything went wrong
 	 */
-	private <T> void callAxiom(Method m, Class<?>[] params, Object[] args, int k, DataGenerator g) 
+	private <T> void callAxiom(AxiomInvoker axiom, Class<?>[] params, Object[] args, int k, DataGenerator g) 
 			throws Throwable {
 		if(k == 0)
 			count = 0;
 		if(params.length == k) { // we have a complete argument list
 			try {
-			  
-				m.invoke(this, args);
+				axiom.invoke(args);
 			}
-			catch(InvocationTargetException e) {
+			catch(Throwable e) {
 			  if (noisy) {
-          System.err.println("FAIL: " + m.getName() + "(" + Arrays.toString(args) + ")");
+          System.err.println("FAIL: " + axiom.getMethod().getName() + "(" + Arrays.toString(args) + ")");
         }
-			  
-				if(e.getCause() != null)
-					throw e.getCause();
-				else
-					throw e;
+				throw e;
 			}
 			count ++;
 			if(noisy)
@@ -357,7 +417,7 @@ abstract public class BaseTestRandomValues extends TestCase {
 			// this argument
 			for(Object t : g.generate(params[k], numberOfValuesFor(params.length))) {
 				args[k] = t;
-				callAxiom(m, params, args, k+1, g);
+				callAxiom(axiom, params, args, k+1, g);
 			}
 		}
 	}
@@ -602,6 +662,19 @@ abstract public class BaseTestRandomValues extends TestCase {
 		assertEqual(a.toRational().multiply(b.toRational()).toInteger(), a.multiply(b));
 	}
 
+	/**
+	 * Check that add, subtract and multiply of reals are exact, i.e. the same
+	 * as for the rationals with the same value, even when the operands are
+	 * doubles.
+	 */
+	public void axiomRealExactness(IReal a, IReal b) {
+		assertTrue(a.add(b).subtract(b).equal(a).getValue());
+		assertTrue(a.add(b).toRational().equal(a.toRational().add(b.toRational())).getValue());
+		assertTrue(a.subtract(b).toRational().equal(a.toRational().subtract(b.toRational())).getValue());
+		assertTrue(a.multiply(b).toRational().equal(a.toRational().multiply(b.toRational())).getValue());
+		assertEquals(Integer.signum(a.toRational().compare(b.toRational())), Integer.signum(a.compare(b)));
+	}
+
 	public void axiomRealBehavior(IReal a, IReal b) {
 		assertApprox(a, a.add(b).subtract(b));
 		assertApprox(a, a.subtract(b).add(b));
@@ -13,6 +13,8 @@
 package org.eclipse.imp.pdb.test;
 
 import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.TestCase;
 
@@ -24,6 +26,9 @@ import org.eclipse.imp.pdb.facts.IValueFactory;
 import org.eclipse.imp.pdb.facts.exceptions.FactTypeUseException;
 import org.eclipse.imp.pdb.facts.type.Type;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.eclipse.imp.pdb.test.relational.HashJoinCompose;
+import org.eclipse.imp.pdb.test.relational.JoinIndex;
+import org.eclipse.imp.pdb.test.relational.SemiNaiveClosure;
 
 public abstract class BaseTestRelation extends TestCase {
     private IValueFactory vf;
@@ -194,6 +199,42 @@ public abstract class BaseTestRelation extends TestCase {
 		}
 	}
 
+	public void testSemiNaiveClosure() {
+		assertTrue(SemiNaiveClosure.closure(vf, integerRelation).isEqual(integerRelation.asRelation().closure()));
+		assertTrue(SemiNaiveClosure.closure(vf, vf.set(tf.tupleType(tf.integerType(), tf.integerType()))).isEmpty());
+
+		Random rnd = new Random(42);
+		ForkJoinPool sequential = new ForkJoinPool(1);
+		for (int nodes = 2; nodes <= 128; nodes *= 2) {
+			for (int k = 0; k < 5; k++) {
+				ISet graph = randomGraph(rnd, nodes, nodes + rnd.nextInt(nodes));
+				ISet expected = graph.asRelation().closure();
+
+				assertTrue("parallel closure differs on " + graph, SemiNaiveClosure.closure(vf, graph).isEqual(expected));
+				assertTrue("sequential closure differs on " + graph, SemiNaiveClosure.closure(vf, graph, sequential).isEqual(expected));
+			}
+		}
+
+		// sparse graphs with a few thousand source nodes, so the tasks split
+		// and merge several times; sparse keeps their closure small
+		for (int k = 0; k < 3; k++) {
+			ISet graph = randomGraph(rnd, 4096, 3000);
+			ISet expected = graph.asRelation().closure();
+
+			assertTrue("parallel closure differs on a large graph", SemiNaiveClosure.closure(vf, graph).isEqual(expected));
+			assertTrue("sequential closure differs on a large graph", SemiNaiveClosure.closure(vf, graph, sequential).isEqual(expected));
+		}
+		sequential.shutdown();
+	}
+
+	private ISet randomGraph(Random rnd, int nodes, int edges) {
+		ISetWriter w = vf.setWriter(tf.tupleType(tf.integerType(), tf.integerType()));
+		for (int i = 0; i < edges; i++) {
+			w.insert(vf.tuple(vf.integer(rnd.nextInt(nodes)), vf.integer(rnd.nextInt(nodes))));
+		}
+		return w.done();
+	}
+
 	public void testCompose() {
 		try {
 			ISet comp = integerRelation.asRelation().compose(integerRelation.asRelation());
@@ -238,6 +279,30 @@ public abstract class BaseTestRelation extends TestCase {
 		}
 	}
 
+	public void testHashJoinCompose() {
+		assertTrue(HashJoinCompose.compose(vf, integerRelation, integerRelation).isEqual(integerRelation.asRelation().compose(integerRelation.asRelation())));
+
+		ISet rel1 = vf.set(vf.tuple(integers[0], doubles[0]), vf.tuple(integers[1], doubles[1]), vf.tuple(integers[2], doubles[2]));
+		ISet rel2 = vf.set(vf.tuple(doubles[0], integers[0]), vf.tuple(doubles[1], integers[1]), vf.tuple(doubles[2], integers[2]));
+		assertTrue(HashJoinCompose.compose(vf, rel1, rel2).isEqual(rel1.asRelation().compose(rel2.asRelation())));
+		assertTrue("Non-comparable types should yield empty composition result.",
+				HashJoinCompose.compose(vf, vf.set(vf.tuple(doubles[0], doubles[0])), rel1).isEmpty());
+
+		Random rnd = new Random(42);
+		for (int nodes = 2; nodes <= 256; nodes *= 2) {
+			ISet right = randomGraph(rnd, nodes, nodes * 2);
+			JoinIndex index = JoinIndex.build(right, 2);
+
+			for (int k = 0; k < 5; k++) {
+				ISet left = randomGraph(rnd, nodes, nodes + rnd.nextInt(nodes));
+				ISet expected = left.asRelation().compose(right.asRelation());
+
+				assertTrue("compose differs on " + left + " o " + right, HashJoinCompose.compose(vf, left, right).isEqual(expected));
+				assertTrue("compose with cached index differs on " + left + " o " + right, HashJoinCompose.compose(vf, left, index).isEqual(expected));
+			}
+		}
+	}
+
 	public void testContains() {
 		try {
 			for (ITuple t : integerTuples) {
@@ -554,4 +619,51 @@ public abstract class BaseTestRelation extends TestCase {
 		}
 		
 	}
+
+	/**
+	 * A rel[int,int] over values at the edges of the int and long ranges,
+	 * which a compact representation would pack into pairs of words.
+	 */
+	public void testIntegerPairBoundaries() {
+		IValue[] chain = {
+				vf.integer(Integer.MIN_VALUE),
+				vf.integer(-1),
+				vf.integer(0),
+				vf.integer(Integer.MAX_VALUE),
+				vf.integer((long) Integer.MAX_VALUE + 1),
+				vf.integer(Long.MAX_VALUE),
+				vf.integer("123456789012345678901234567890")
+		};
+
+		ISetWriter forward = vf.setWriter(tf.tupleType(tf.integerType(), tf.integerType()));
+		ISetWriter backward = vf.setWriter(tf.tupleType(tf.valueType(), tf.valueType()));
+		for (int i = 0; i + 1 < chain.length; i++) {
+			forward.insert(vf.tuple(chain[i], chain[i + 1]));
+			backward.insert(vf.tuple(chain[chain.length - 1 - i], chain[chain.length - 2 - i]));
+		}
+		ISet rel = forward.done();
+		ISet inverse = backward.done();
+
+		assertEquals(chain.length - 1, rel.size());
+		assertEquals(chain.length * (chain.length - 1) / 2, rel.asRelation().closure().size());
+		for (int i = 0; i + 1 < chain.length; i++) {
+			assertTrue(rel.contains(vf.tuple(chain[i], chain[i + 1])));
+			assertFalse(rel.contains(vf.tuple(chain[i + 1], chain[i])));
+			assertTrue(inverse.contains(vf.tuple(chain[i + 1], chain[i])));
+		}
+
+		// (a, b) and (b, a) must not collide into the same packed entry
+		ISet symmetric = rel.union(inverse);
+		assertEquals(2 * (chain.length - 1), symmetric.size());
+
+		ISetWriter w = vf.setWriter(tf.tupleType(tf.integerType(), tf.integerType()));
+		for (IValue t : rel) {
+			ITuple tuple = (ITuple) t;
+			w.insert(vf.tuple(vf.integer(tuple.get(0).toString()), vf.integer(tuple.get(1).toString())));
+		}
+		ISet copy = w.done();
+		assertTrue(copy.isEqual(rel));
+		assertEquals(rel.hashCode(), copy.hashCode());
+		assertTrue(symmetric.subtract(inverse).isEqual(rel));
+	}
 }
@@ -12,6 +12,8 @@
 
 package org.eclipse.imp.pdb.test;
 
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import junit.framework.TestCase;
@@ -325,4 +327,171 @@ public abstract class BaseTestSet extends TestCase {
 		}
 		
 	}
+
+	/**
+	 * Integers at the edges of the int and long ranges, and beyond, must
+	 * behave the same whichever representation a set[int] picks for them.
+	 */
+	private IValue[] boundaryIntegers() {
+		BigInteger big = BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(Long.MAX_VALUE));
+		return new IValue[] {
+				vf.integer(0),
+				vf.integer(1),
+				vf.integer(-1),
+				vf.integer(Integer.MAX_VALUE),
+				vf.integer(Integer.MIN_VALUE),
+				vf.integer((long) Integer.MAX_VALUE + 1),
+				vf.integer((long) Integer.MIN_VALUE - 1),
+				vf.integer(Long.MAX_VALUE),
+				vf.integer(Long.MIN_VALUE),
+				vf.integer(big.toString()),
+				vf.integer(big.negate().toString())
+		};
+	}
+
+	public void testIntegerBoundaries() {
+		IValue[] boundaries = boundaryIntegers();
+
+		ISetWriter forward = vf.setWriter(tf.integerType());
+		ISetWriter backward = vf.setWriter(tf.valueType());
+		for (int i = 0; i < boundaries.length; i++) {
+			forward.insert(boundaries[i]);
+			backward.insert(boundaries[boundaries.length - 1 - i]);
+		}
+		ISet set1 = forward.done();
+		ISet set2 = backward.done();
+
+		assertEquals(boundaries.length, set1.size());
+		assertTrue(set1.isEqual(set2));
+		assertTrue(set2.isEqual(set1));
+		assertEquals(set1.hashCode(), set2.hashCode());
+
+		for (IValue b : boundaries) {
+			assertTrue(set1.contains(b));
+			assertTrue(set2.contains(b));
+			assertTrue(set1.contains(vf.integer(b.toString())));
+		}
+		assertFalse(set1.contains(vf.integer(2)));
+		assertFalse(set1.contains(vf.integer((long) Integer.MAX_VALUE - 1)));
+		assertFalse(set1.contains(vf.string("0")));
+
+		int n = 0;
+		for (IValue v : set1) {
+			assertTrue(set2.contains(v));
+			n++;
+		}
+		assertEquals(boundaries.length, n);
+	}
+
+	/**
+	 * Small integers mixed with big ones and with non-integers, as happens
+	 * when a compact set[int] has to grow beyond its representation.
+	 */
+	public void testIntegerMixing() {
+		ISet small = integerUniverse;
+		ISet grown = small;
+		IValue huge = vf.integer(BigInteger.ONE.shiftLeft(100).toString());
+		grown = grown.insert(huge);
+		grown = grown.insert(vf.integer(Long.MIN_VALUE));
+
+		assertEquals(small.size() + 2, grown.size());
+		assertTrue(grown.contains(huge));
+		for (IValue v : integers) {
+			assertTrue(grown.contains(v));
+		}
+		assertTrue(grown.subtract(vf.set(huge, vf.integer(Long.MIN_VALUE))).isEqual(small));
+		assertEquals(small.hashCode(), grown.delete(huge).delete(vf.integer(Long.MIN_VALUE)).hashCode());
+
+		ISet mixed = small.insert(doubles[1]);
+		assertTrue(mixed.contains(doubles[1]));
+		assertTrue(mixed.contains(integers[1]));
+		assertEquals(small.size() + 1, mixed.size());
+		assertTrue(mixed.intersect(small).isEqual(small));
+		assertTrue(small.union(vf.set(doubles[1])).isEqual(mixed));
+		assertTrue(mixed.getElementType().isNumber());
+
+		ISetWriter w = vf.setWriter(tf.integerType());
+		for (int i = integers.length - 1; i >= 0; i--) {
+			w.insert(vf.integer(i));
+		}
+		ISet rebuilt = w.done();
+		assertTrue(rebuilt.isEqual(small));
+		assertEquals(small.hashCode(), rebuilt.hashCode());
+	}
+
+	/**
+	 * Every intermediate version of a set built by successive inserts stays
+	 * intact, and so does a set that others were derived from by delete.
+	 */
+	public void testPersistentVersions() {
+		ISet[] versions = new ISet[1001];
+		versions[0] = vf.set(tf.integerType());
+		for (int i = 0; i < versions.length - 1; i++) {
+			versions[i + 1] = versions[i].insert(vf.integer(i));
+		}
+
+		for (int v = 0; v < versions.length; v += 37) {
+			ISet set = versions[v];
+			assertEquals(v, set.size());
+			for (int i = 0; i < versions.length - 1; i++) {
+				assertEquals(i < v, set.contains(vf.integer(i)));
+			}
+		}
+
+		ISet full = versions[versions.length - 1];
+		ISet same = full.insert(vf.integer(0));
+		assertTrue(same.isEqual(full));
+
+		ISet smaller = full;
+		for (int i = 0; i < 500; i++) {
+			smaller = smaller.delete(vf.integer(i));
+		}
+		assertEquals(500, smaller.size());
+		assertEquals(versions.length - 1, full.size());
+		assertTrue(full.contains(vf.integer(0)));
+		assertTrue(smaller.isEqual(full.subtract(versions[500])));
+
+		// strings with equal Java hash codes
+		ISet colliding = vf.set(vf.string("Aa"), vf.string("BB"), vf.string("AaAa"), vf.string("BBBB"));
+		ISet fewer = colliding.delete(vf.string("BB"));
+		assertEquals(4, colliding.size());
+		assertTrue(colliding.contains(vf.string("BB")));
+		assertEquals(3, fewer.size());
+		assertTrue(fewer.contains(vf.string("Aa")));
+		assertFalse(fewer.contains(vf.string("BB")));
+	}
+
+	/**
+	 * Bulk inserts, from an array or any iterable and with duplicates, build
+	 * the same set as inserting one element at a time.
+	 */
+	public void testBulkInsert() {
+		ISetWriter array = vf.setWriter(tf.integerType());
+		array.insert(integers);
+		assertTrue(array.done().isEqual(integerUniverse));
+
+		ISetWriter iterable = vf.setWriter(tf.integerType());
+		iterable.insertAll(Arrays.asList(integers));
+		assertTrue(iterable.done().isEqual(integerUniverse));
+
+		ISetWriter fromSet = vf.setWriter(tf.integerType());
+		fromSet.insertAll(integerUniverse);
+		assertTrue(fromSet.done().isEqual(integerUniverse));
+
+		ISetWriter duplicates = vf.setWriter(tf.integerType());
+		duplicates.insertAll(Arrays.asList(integers));
+		duplicates.insert(integers);
+		duplicates.insert(integers[0]);
+		ISet result = duplicates.done();
+		assertEquals(integers.length, result.size());
+		assertTrue(result.isEqual(integerUniverse));
+		assertEquals(integerUniverse.hashCode(), result.hashCode());
+
+		ISetWriter numbers = vf.setWriter(tf.numberType());
+		numbers.insert(integers);
+		numbers.insertAll(Arrays.asList(doubles));
+		ISet mixed = numbers.done();
+		assertEquals(integers.length + doubles.length, mixed.size());
+		assertTrue(mixed.getElementType().isNumber());
+	}
 }
@@ -12,10 +12,32 @@ package org.eclipse.imp.pdb.test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.TestCase;
 
+import org.eclipse.imp.pdb.facts.IList;
+import org.eclipse.imp.pdb.facts.IConstructor;
+import org.eclipse.imp.pdb.facts.IMap;
+import org.eclipse.imp.pdb.facts.IMapWriter;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
 import org.eclipse.imp.pdb.facts.IValue;
 import org.eclipse.imp.pdb.facts.IValueFactory;
 import org.eclipse.imp.pdb.facts.impl.fast.ValueFactory;
@@ -24,6 +46,21 @@ import org.eclipse.imp.pdb.facts.io.binary.BinaryWriter;
 import org.eclipse.imp.pdb.facts.type.Type;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
 import org.eclipse.imp.pdb.facts.type.TypeStore;
+import org.eclipse.imp.pdb.test.io.ChannelBinaryReader;
+import org.eclipse.imp.pdb.test.io.ChannelBinaryWriter;
+import org.eclipse.imp.pdb.test.io.ChunkedBinaryReader;
+import org.eclipse.imp.pdb.test.io.ChunkedBinaryWriter;
+import org.eclipse.imp.pdb.test.io.CollectionKind;
+import org.eclipse.imp.pdb.test.io.IndexedBinaryFile;
+import org.eclipse.imp.pdb.test.io.IndexedBinaryWriter;
+import org.eclipse.imp.pdb.test.io.SessionBinaryReader;
+import org.eclipse.imp.pdb.test.io.SessionBinaryWriter;
+import org.eclipse.imp.pdb.test.io.StreamingBinaryReader;
+import org.eclipse.imp.pdb.test.io.StreamingBinaryWriter;
+import org.eclipse.imp.pdb.test.random.RandomSeed;
+import org.eclipse.imp.pdb.test.random.RandomTypeGenerator;
+import org.eclipse.imp.pdb.test.random.RandomValueGenerator;
+import org.eclipse.imp.pdb.test.random.SplitMixRandom;
 
 /**
  * @author Arnold Lankamp
@@ -102,6 +139,463 @@ public class TestBinaryIO extends TestCase {
 		}
 	}
 	
+	public void testRandomValuesIO() throws IOException {
+		SplitMixRandom root = RandomSeed.root();
+		RandomTypeGenerator types = new RandomTypeGenerator(root.split());
+		RandomValueGenerator values = new RandomValueGenerator(vf, ts, Boolean, root.split());
+
+		for (int i = 0; i < 300; i++) {
+			Type type = i % 3 == 0 ? tf.listType(Boolean) : types.next(4);
+			for (int j = 0; j < 3; j++) {
+				IValue value = values.generate(type);
+
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				new BinaryWriter(value, baos, ts).serialize();
+				IValue result = new BinaryReader(vf, ts, new ByteArrayInputStream(baos.toByteArray())).deserialize();
+
+				if (!value.isEqual(result)) {
+					fail("Not equal: \n\t" + value + " : " + value.getType() + "\n\t" + result + " : " + result.getType() + "\n" + RandomSeed.describe());
+				}
+			}
+		}
+	}
+
+	public void testStreamingIO() throws IOException {
+		ISetWriter sw = vf.setWriter(tf.integerType());
+		for (int i = 0; i < 10000; i++) {
+			sw.insert(vf.integer(i));
+		}
+		IMapWriter mw = vf.mapWriter(tf.stringType(), tf.integerType());
+		for (int i = 0; i < 1000; i++) {
+			mw.put(vf.string("k" + i), vf.integer(i));
+		}
+		IMap emptyMap = vf.mapWriter(tf.stringType(), tf.integerType()).done();
+
+		IValue[] collections = {
+				vf.list(testValues),
+				vf.set(testValues),
+				sw.done(),
+				mw.done(),
+				vf.set(tf.integerType()),
+				vf.list(tf.integerType()),
+				emptyMap
+		};
+
+		for (IValue collection : collections) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			StreamingBinaryWriter.write(collection, baos, ts);
+
+			StreamingBinaryReader reader = new StreamingBinaryReader(vf, ts, new ByteArrayInputStream(baos.toByteArray()));
+			IValue result = reader.readAll();
+			reader.close();
+
+			if (!collection.isEqual(result)) {
+				fail("Not equal: \n\t" + collection + " : " + collection.getType() + "\n\t" + result + " : " + result.getType());
+			}
+		}
+	}
+
+	/**
+	 * Streams a set of <code>-Dpdb.test.streaming.size</code> integers
+	 * (default 10^5) through a file, never holding more than one element.
+	 * To check that memory stays bounded, run e.g. with
+	 * <code>-Xmx64m -Dpdb.test.streaming.size=100000000</code>.
+	 */
+	public void testStreamingLargeSet() throws IOException {
+		final long size = Long.getLong("pdb.test.streaming.size", 100000);
+		File file = File.createTempFile("pdb-streaming", ".pbf");
+		try {
+			try (StreamingBinaryWriter writer = new StreamingBinaryWriter(new FileOutputStream(file), ts, CollectionKind.SET)) {
+				writer.writeAll(new Iterator<IValue>() {
+					private long i = 0;
+
+					public boolean hasNext() {
+						return i < size;
+					}
+
+					public IValue next() {
+						return vf.integer(i++);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				});
+				assertEquals(size, writer.count());
+			}
+
+			try (StreamingBinaryReader reader = new StreamingBinaryReader(vf, ts, new FileInputStream(file))) {
+				assertEquals(CollectionKind.SET, reader.getKind());
+				long i = 0;
+				for (IValue v : reader) {
+					if (!v.isEqual(vf.integer(i))) {
+						fail("element " + i + " read back as " + v);
+					}
+					i++;
+				}
+				assertEquals(size, i);
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	public void testIndexedFileIO() throws IOException {
+		IList list = vf.list(testValues);
+		ISetWriter sw = vf.setWriter(tf.integerType());
+		for (int i = 0; i < 10000; i++) {
+			sw.insert(vf.integer(i * 7));
+		}
+		ISet ints = sw.done();
+		IMapWriter mw = vf.mapWriter(tf.stringType(), tf.integerType());
+		for (int i = 0; i < 1000; i++) {
+			mw.put(vf.string("k" + i), vf.integer(i));
+		}
+		IMap map = mw.done();
+
+		IValue[] collections = {
+				list,
+				vf.set(testValues),
+				ints,
+				map,
+				vf.set(tf.integerType()),
+				vf.mapWriter(tf.stringType(), tf.integerType()).done()
+		};
+
+		// a fresh file for every collection: a mapped file cannot be rewritten
+		// on all platforms, and it stays mapped until the buffer is collected
+		for (IValue collection : collections) {
+			File file = File.createTempFile("pdb-indexed", ".pbfi");
+			try {
+				IndexedBinaryWriter.write(collection, file, ts);
+				try (IndexedBinaryFile indexed = new IndexedBinaryFile(vf, ts, file)) {
+					IValue result = indexed.readAll();
+					if (!collection.isEqual(result)) {
+						fail("Not equal: \n\t" + collection + " : " + collection.getType() + "\n\t" + result + " : " + result.getType());
+					}
+
+					if (collection.getType().isList()) {
+						assertEquals(list.length(), indexed.size());
+						for (int i = 0; i < list.length(); i++) {
+							assertTrue(list.get(i).isEqual(indexed.get(i)));
+						}
+					}
+					if (collection.getType().isSet()) {
+						for (IValue element : (ISet) collection) {
+							assertTrue("missing " + element, indexed.contains(element));
+						}
+						assertFalse(indexed.contains(vf.integer(-1)));
+						assertFalse(indexed.contains(vf.string("absent")));
+					}
+					if (collection.getType().isMap()) {
+						IMap m = (IMap) collection;
+						for (IValue key : m) {
+							assertTrue(m.get(key).isEqual(indexed.lookup(key)));
+						}
+						assertNull(indexed.lookup(vf.string("absent")));
+					}
+
+					if (collection == ints) {
+						int n = 0;
+						for (IValue v : indexed.range(100, 200)) {
+							assertTrue(v.isEqual(indexed.get(100 + n)));
+							assertTrue(ints.contains(v));
+							n++;
+						}
+						assertEquals(100, n);
+					}
+				}
+			}
+			finally {
+				file.delete();
+			}
+		}
+
+		// a file in another format is rejected when it is opened
+		File other = File.createTempFile("pdb-chunked", ".pbfc");
+		try {
+			ChunkedBinaryWriter.write(ints, other, ts);
+			try {
+				new IndexedBinaryFile(vf, ts, other).close();
+				fail("opened a chunked file as an indexed one");
+			}
+			catch (IOException e) {
+				// expected
+			}
+		}
+		finally {
+			other.delete();
+		}
+	}
+
+	public void testIndexedFileFailedElement() throws IOException {
+		File file = File.createTempFile("pdb-indexed", ".pbfi");
+		try {
+			try (IndexedBinaryWriter writer = new IndexedBinaryWriter(file, ts, CollectionKind.SET)) {
+				writer.write(vf.integer(1));
+				try {
+					writer.write(unencodable());
+					fail("encoded a value that is not an integer");
+				}
+				catch (IOException | RuntimeException e) {
+					// expected
+				}
+				try {
+					writer.write(vf.integer(2));
+					fail("wrote on after a failed element");
+				}
+				catch (IllegalStateException e) {
+					// expected
+				}
+			}
+			try {
+				new IndexedBinaryFile(vf, ts, file).close();
+				fail("opened a file whose writer failed");
+			}
+			catch (IOException e) {
+				// expected
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * @return a value that claims to be an integer but is not an IInteger,
+	 * which the binary writer fails on
+	 */
+	private static IValue unencodable() {
+		return (IValue) Proxy.newProxyInstance(IValue.class.getClassLoader(), new Class<?>[] { IValue.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				switch (method.getName()) {
+				case "getType":
+					return tf.integerType();
+				case "hashCode":
+					return 0;
+				case "equals":
+					return proxy == args[0];
+				case "toString":
+					return "unencodable";
+				default:
+					throw new UnsupportedOperationException(method.getName());
+				}
+			}
+		});
+	}
+
+	public void testChannelIO() throws IOException {
+		ISetWriter sw = vf.setWriter(tf.integerType());
+		for (int i = 0; i < 100000; i++) {
+			sw.insert(vf.integer(i));
+		}
+		ISet large = sw.done(); // larger than one pooled buffer
+
+		IValue[] values = new IValue[testValues.length + 2];
+		System.arraycopy(testValues, 0, values, 0, testValues.length);
+		values[testValues.length] = large;
+		values[testValues.length + 1] = vf.list(testValues);
+
+		// many values on one channel
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ChannelBinaryWriter writer = new ChannelBinaryWriter(Channels.newChannel(baos), ts)) {
+			for (int i = 0; i < 1000; i++) {
+				writer.write(values[i % values.length]);
+			}
+			assertEquals(1000, writer.count());
+		}
+		try (ChannelBinaryReader reader = new ChannelBinaryReader(vf, ts, Channels.newChannel(new ByteArrayInputStream(baos.toByteArray())))) {
+			for (int i = 0; i < 1000; i++) {
+				IValue value = values[i % values.length];
+				IValue result = reader.read();
+				if (!value.isEqual(result)) {
+					fail("Not equal: \n\t" + value + " : " + value.getType() + "\n\t" + result + " : " + result.getType());
+				}
+			}
+			assertNull(reader.read());
+		}
+
+		// one value per file
+		File file = File.createTempFile("pdb-channel", ".pbf");
+		try {
+			for (IValue value : values) {
+				try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					ChannelBinaryWriter.write(value, out, ts);
+				}
+				try (ChannelBinaryReader reader = new ChannelBinaryReader(vf, ts, FileChannel.open(file.toPath()))) {
+					assertTrue(value.isEqual(reader.read()));
+					assertNull(reader.read());
+				}
+			}
+		}
+		finally {
+			file.delete();
+		}
+
+		// caller's own buffer
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 10);
+		int encoded = 0;
+		try {
+			for (;;) {
+				ChannelBinaryWriter.encode(testValues[encoded % testValues.length], buffer, ts);
+				encoded++;
+			}
+		}
+		catch (BufferOverflowException e) {
+			// full
+		}
+		assertTrue(encoded > testValues.length);
+		buffer.flip();
+		for (int i = 0; i < encoded; i++) {
+			assertTrue(testValues[i % testValues.length].isEqual(ChannelBinaryReader.decode(vf, ts, buffer)));
+		}
+		assertFalse(buffer.hasRemaining());
+	}
+
+	public void testSessionIO() throws IOException {
+		SplitMixRandom root = RandomSeed.root();
+		RandomTypeGenerator types = new RandomTypeGenerator(root.split());
+		RandomValueGenerator random = new RandomValueGenerator(vf, ts, Boolean, root.split());
+		IMapWriter mw = vf.mapWriter(tf.stringType(), tf.integerType());
+		for (int i = 0; i < 100; i++) {
+			mw.put(vf.string("k" + i), vf.integer(i));
+		}
+
+		List<IValue> values = new ArrayList<>();
+		for (int round = 0; round < 3; round++) {
+			values.addAll(Arrays.asList(testValues));
+			values.add(mw.done());
+			values.add(vf.set(testValues));
+			values.add(vf.node("message", vf.string("ping"), vf.integer(round), vf.bool(round == 1)));
+			values.add(vf.real(1.5));
+			for (int i = 0; i < 100; i++) {
+				values.add(random.generate(i % 3 == 0 ? tf.listType(Boolean) : types.next(4)));
+			}
+		}
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (SessionBinaryWriter writer = new SessionBinaryWriter(baos, ts)) {
+			for (IValue value : values) {
+				writer.write(value);
+			}
+			assertEquals(values.size(), writer.count());
+		}
+
+		try (SessionBinaryReader reader = new SessionBinaryReader(vf, ts, new ByteArrayInputStream(baos.toByteArray()))) {
+			for (IValue value : values) {
+				IValue result = reader.read();
+				if (!value.isEqual(result)) {
+					fail("Not equal: \n\t" + value + " : " + value.getType() + "\n\t" + result + " : " + result.getType() + "\n" + RandomSeed.describe());
+				}
+			}
+			assertNull(reader.read());
+		}
+
+		// the annotated fixture goes through as PBF, annotation included
+		IValue annotated = testValues[testValues.length - 1];
+		baos = new ByteArrayOutputStream();
+		try (SessionBinaryWriter writer = new SessionBinaryWriter(baos, ts)) {
+			writer.write(annotated);
+		}
+		try (SessionBinaryReader reader = new SessionBinaryReader(vf, ts, new ByteArrayInputStream(baos.toByteArray()))) {
+			IConstructor result = (IConstructor) reader.read();
+			assertTrue(vf.integer(1).isEqual(result.asAnnotatable().getAnnotation("test")));
+		}
+
+		// repeated small values cost much less than separately encoded ones
+		ByteArrayOutputStream session = new ByteArrayOutputStream();
+		ByteArrayOutputStream separate = new ByteArrayOutputStream();
+		try (SessionBinaryWriter writer = new SessionBinaryWriter(session, ts);
+				StreamingBinaryWriter frames = new StreamingBinaryWriter(separate, ts, CollectionKind.LIST)) {
+			for (int i = 0; i < 1000; i++) {
+				IValue value = vf.constructor(Friends, vf.list(name("Hans"), name("Bob" + (i % 10))));
+				writer.write(value);
+				frames.write(value);
+			}
+		}
+		assertTrue(session.size() + " vs " + separate.size(), session.size() * 2 < separate.size());
+	}
+
+	public void testChunkedIO() throws IOException {
+		IList list = vf.list(testValues);
+		ISetWriter sw = vf.setWriter(tf.integerType());
+		for (int i = 0; i < 10000; i++) {
+			sw.insert(vf.integer(i * 7));
+		}
+		ISet ints = sw.done();
+		IMapWriter mw = vf.mapWriter(tf.stringType(), tf.integerType());
+		for (int i = 0; i < 1000; i++) {
+			mw.put(vf.string("k" + i), vf.integer(i));
+		}
+		IMap map = mw.done();
+
+		IValue[] collections = {
+				list,
+				vf.set(testValues),
+				ints,
+				map,
+				vf.set(tf.integerType()),
+				vf.mapWriter(tf.stringType(), tf.integerType()).done()
+		};
+
+		File file = File.createTempFile("pdb-chunked", ".pbfc");
+		ForkJoinPool single = new ForkJoinPool(1);
+		ForkJoinPool four = new ForkJoinPool(4);
+		try {
+			for (IValue collection : collections) {
+				// small segments, so even the fixtures are split several ways
+				ChunkedBinaryWriter.write(collection, file, ts, 7);
+				try (ChunkedBinaryReader reader = new ChunkedBinaryReader(vf, ts, file)) {
+					for (IValue result : new IValue[] { reader.readAll(single), reader.readAll(four), reader.readAll() }) {
+						if (!collection.isEqual(result)) {
+							fail("Not equal: \n\t" + collection + " : " + collection.getType() + "\n\t" + result + " : " + result.getType());
+						}
+					}
+
+					int elements = 0;
+					for (int i = 0; i < reader.segments(); i++) {
+						IValue segment = reader.readSegment(i);
+						switch (reader.getKind()) {
+						case LIST:
+							elements += ((IList) segment).length();
+							break;
+						case SET:
+							elements += ((ISet) segment).size();
+							break;
+						case MAP:
+							elements += ((IMap) segment).size();
+							break;
+						}
+					}
+					assertEquals(reader.size(), elements);
+				}
+			}
+		}
+		finally {
+			single.shutdown();
+			four.shutdown();
+			file.delete();
+		}
+
+		// a file in another format is rejected when it is opened
+		File other = File.createTempFile("pdb-indexed", ".pbfi");
+		try {
+			IndexedBinaryWriter.write(ints, other, ts);
+			try {
+				new ChunkedBinaryReader(vf, ts, other).close();
+				fail("opened an indexed file as a chunked one");
+			}
+			catch (IOException e) {
+				// expected
+			}
+		}
+		finally {
+			other.delete();
+		}
+	}
+
 	private final static String[] HEX = new String[]{"0","1","2","3","4","5","6","7","8","9","a","b","c","d","e","f"};
 	
 	// May be handy when debugging.
@@ -29,6 +29,10 @@ import org.eclipse.imp.pdb.facts.io.XMLWriter;
 import org.eclipse.imp.pdb.facts.type.Type;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
 import org.eclipse.imp.pdb.facts.type.TypeStore;
+import org.eclipse.imp.pdb.test.random.RandomSeed;
+import org.eclipse.imp.pdb.test.random.RandomTypeGenerator;
+import org.eclipse.imp.pdb.test.random.RandomValueGenerator;
+import org.eclipse.imp.pdb.test.random.SplitMixRandom;
 
 public class TestIO extends TestCase {
 	private static TypeStore ts = new TypeStore();
@@ -151,5 +155,24 @@ public class TestIO extends TestCase {
 		}
     }
 
-	
+	public void testStandardTextRandomValues() throws IOException {
+		SplitMixRandom root = RandomSeed.root();
+		RandomTypeGenerator types = new RandomTypeGenerator(root.split());
+		RandomValueGenerator values = new RandomValueGenerator(vf, ts, Boolean, root.split());
+		StandardTextReader reader = new StandardTextReader();
+		StandardTextWriter writer = new StandardTextWriter();
+
+		for (int i = 0; i < 300; i++) {
+			Type type = i % 3 == 0 ? tf.listType(Boolean) : types.next(4);
+			IValue value = values.generate(type);
+
+			StringWriter w = new StringWriter();
+			writer.write(value, w);
+			IValue result = reader.read(vf, ts, type, new StringReader(w.toString()));
+
+			if (!value.isEqual(result)) {
+				fail("Not equal: \n\t" + w + " : " + type + "\n\t" + result + "\n" + RandomSeed.describe());
+			}
+		}
+	}
 }
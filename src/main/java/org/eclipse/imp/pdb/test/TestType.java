@@ -26,6 +26,7 @@ import org.eclipse.imp.pdb.facts.type.Type;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
 import org.eclipse.imp.pdb.facts.type.TypeStore;
 import org.eclipse.imp.pdb.test.random.RandomTypeGenerator;
+import org.eclipse.imp.pdb.test.type.TypeLatticeCache;
 
 public class TestType extends TestCase {
 	private static final int COMBINATION_UPPERBOUND = 5;
@@ -381,6 +382,44 @@ public class TestType extends TestCase {
       }
     }
   }
+
+	public void testLatticeCache() {
+		List<Type> sample = new LinkedList<>(allTypes.subList(0, Math.min(100, allTypes.size())));
+		sample.add(ft.voidType());
+		long pairs = (long) sample.size() * sample.size();
+
+		// a small cache keeps evicting, a large one mostly hits on the second pass
+		TypeLatticeCache small = new TypeLatticeCache(16);
+		TypeLatticeCache large = new TypeLatticeCache(1 << 20);
+		for (TypeLatticeCache cache : new TypeLatticeCache[] { small, large }) {
+			for (int pass = 0; pass < 2; pass++) {
+				for (Type t1 : sample) {
+					for (Type t2 : sample) {
+						assertEquals(t1.isSubtypeOf(t2), cache.isSubtypeOf(t1, t2));
+						assertSame(t1.lub(t2), cache.lub(t1, t2));
+						assertSame(t1.glb(t2), cache.glb(t1, t2));
+					}
+				}
+			}
+			assertEquals(6 * pairs, cache.hits() + cache.misses());
+		}
+		// the second pass repeats 3 * pairs lookups; the table is direct-mapped,
+		// so the few pairs that share a slot with another one still miss
+		assertTrue(large.toString(), large.hits() >= 3 * pairs * 9 / 10);
+		assertTrue(small + " vs " + large, small.hits() < large.hits());
+
+		TypeLatticeCache cache = new TypeLatticeCache(1 << 18);
+		Type a = ft.integerType();
+		Type b = ft.realType();
+		cache.lub(a, b);
+		assertEquals(0, cache.hits());
+		cache.lub(a, b);
+		assertEquals(1, cache.hits());
+		assertEquals(0.5, cache.hitRate(), 0.0);
+		cache.clear();
+		assertEquals(0, cache.hits() + cache.misses());
+	}
+
 	public void testGetTypeDescriptor() {
 		int count = 0;
 		for (Type t1 : allTypes) {
@@ -14,6 +14,14 @@ package org.eclipse.imp.pdb.test;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import junit.framework.TestCase;
 
@@ -24,6 +32,7 @@ import org.eclipse.imp.pdb.facts.impl.reference.ValueFactory;
 import org.eclipse.imp.pdb.facts.type.Type;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
 import org.eclipse.imp.pdb.facts.type.TypeStore;
+import org.eclipse.imp.pdb.test.type.ConcurrentTypeStore;
 
 public class TestTypeFactory extends TestCase {
 	private TypeFactory ft = TypeFactory.getInstance();
@@ -404,4 +413,139 @@ public class TestTypeFactory extends TestCase {
 			fail("named types should be canonical");
 		}
 	}
+
+	/**
+	 * Threads declare data types, constructors and annotations into one
+	 * store while reading back their own and each other's declarations.
+	 */
+	public void testConcurrentTypeStore() throws InterruptedException {
+		final int threads = 8;
+		final int declarations = 200;
+		final TypeStore store = new ConcurrentTypeStore();
+		final AtomicIntegerArray progress = new AtomicIntegerArray(threads);
+		final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						Random random = new Random(id);
+						for (int i = 0; i < declarations; i++) {
+							Type adt = ft.abstractDataType(store, "A_" + id + "_" + i);
+							Type leaf = ft.constructor(store, adt, "leaf_" + id + "_" + i, ft.integerType());
+							ft.constructor(store, adt, "node_" + id + "_" + i, adt, adt);
+							store.declareAnnotation(adt, "pos", ft.sourceLocationType());
+							progress.set(id, i + 1);
+
+							assertSame(adt, store.lookupAbstractDataType("A_" + id + "_" + i));
+							assertSame(leaf, store.lookupConstructor(adt, "leaf_" + id + "_" + i, ft.tupleType(ft.integerType())));
+							assertEquals(2, store.lookupAlternatives(adt).size());
+							assertTrue(store.getAbstractDataTypes().contains(adt));
+							assertTrue(store.getConstructors().contains(leaf));
+
+							// repeating a declaration leaves the store as it was
+							store.declareConstructor(leaf);
+							assertEquals(2, store.lookupAlternatives(adt).size());
+
+							int other = random.nextInt(threads);
+							int seen = progress.get(other);
+							if (seen > 0) {
+								int j = random.nextInt(seen);
+								Type otherAdt = store.lookupAbstractDataType("A_" + other + "_" + j);
+								assertNotNull(otherAdt);
+								assertEquals(1, store.lookupConstructor(otherAdt, "leaf_" + other + "_" + j).size());
+								assertSame(ft.sourceLocationType(), store.getAnnotationType(otherAdt, "pos"));
+								assertTrue(store.getAnnotations(otherAdt).containsKey("pos"));
+							}
+						}
+					}
+					catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			};
+			workers[t].start();
+		}
+
+		start.countDown();
+		for (Thread w : workers) {
+			w.join();
+		}
+		if (!failures.isEmpty()) {
+			failures.peek().printStackTrace();
+			fail(failures.size() + " threads failed, first: " + failures.peek());
+		}
+
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < declarations; i++) {
+				Type adt = store.lookupAbstractDataType("A_" + t + "_" + i);
+				assertNotNull(adt);
+				assertEquals(2, store.lookupAlternatives(adt).size());
+				Map<String, Type> annotations = store.getAnnotations(adt);
+				assertSame(ft.sourceLocationType(), annotations.get("pos"));
+			}
+		}
+		assertNull(store.lookupAbstractDataType("A_missing"));
+	}
+
+	/**
+	 * Creates <code>-Dpdb.test.types.transient</code> (default 2000) tuple,
+	 * map, alias and data types that are dropped right away, while a sample
+	 * of them is kept alive. Live types must stay canonical throughout,
+	 * whether or not the dropped ones have been collected. The types are
+	 * interned in the shared TypeFactory, so the default stays small; to
+	 * check that dropped types are not retained forever, run this test on
+	 * its own with e.g. <code>-Xmx32m -Dpdb.test.types.transient=10000000</code>.
+	 */
+	public void testTransientTypesKeepIdentity() {
+		long count = Long.getLong("pdb.test.types.transient", 2000);
+		List<Type> live = new ArrayList<>();
+		List<Integer> liveIndex = new ArrayList<>();
+		TypeStore store = new TypeStore();
+
+		for (long n = 0; n < count; n++) {
+			int i = (int) n;
+			if (i % 1000 == 0) {
+				// declarations are per store, so drop the store now and then too
+				store = new TypeStore();
+			}
+			Type t = make(store, i);
+			if (i % 97 == 0) {
+				live.add(t);
+				liveIndex.add(i);
+				// the same store is needed to rebuild declared types
+				assertSame(t, make(store, i));
+			}
+		}
+
+		for (int k = 0; k < live.size(); k++) {
+			int i = liveIndex.get(k);
+			if (i % 4 < 2) {
+				// structural types do not need their store
+				assertSame(live.get(k), make(null, i));
+			}
+		}
+		assertSame(ft.tupleType(ft.integerType(), ft.stringType()), ft.tupleType(ft.integerType(), ft.stringType()));
+	}
+
+	private Type make(TypeStore store, int i) {
+		Type leaf = ft.tupleType(ft.integerType(), ft.stringType(), ft.tupleType(ft.realType()));
+		switch (i % 4) {
+		case 0:
+			return ft.tupleType(leaf, ft.listType(ft.integerType()), ft.setType(ft.tupleType(ft.realType(), ft.stringType())), ft.tupleType(ft.sourceLocationType(), "l" + i));
+		case 1:
+			return ft.mapType(ft.tupleType(ft.stringType(), "k" + i), ft.setType(leaf));
+		case 2:
+			return ft.aliasType(store, "Alias" + i, leaf);
+		default:
+			Type adt = ft.abstractDataType(store, "Adt" + i);
+			ft.constructor(store, adt, "cons" + i, leaf, "f");
+			return adt;
+		}
+	}
 }
@@ -0,0 +1,53 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A pool of direct ByteBuffers of one standard size, shared by the channel
+ * readers and writers so that opening one does not allocate (direct buffers
+ * are expensive to allocate and are only freed by the garbage collector).
+ * 
+ * Buffers larger than the standard size, which a reader or writer needs for
+ * a single value that does not fit, are allocated on the heap and are not
+ * pooled.
+ */
+final class BufferPool {
+	static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_POOLED = 64;
+
+	static final BufferPool SHARED = new BufferPool();
+
+	private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * @return a cleared buffer of at least <code>capacity</code> bytes
+	 */
+	ByteBuffer acquire(int capacity) {
+		if (capacity > BUFFER_SIZE) {
+			return ByteBuffer.allocate(capacity);
+		}
+		ByteBuffer buffer = free.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool; it must not be used afterwards.
+	 */
+	void release(ByteBuffer buffer) {
+		if (buffer.isDirect() && buffer.capacity() == BUFFER_SIZE && free.size() < MAX_POOLED) {
+			free.offer(buffer);
+		}
+	}
+}
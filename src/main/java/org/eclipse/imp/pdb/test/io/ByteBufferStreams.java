@@ -0,0 +1,109 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stream views of a ByteBuffer, so the PBF BinaryWriter and BinaryReader
+ * can encode straight into, and decode straight out of, a buffer.
+ */
+final class ByteBufferStreams {
+	private ByteBufferStreams() {
+	}
+
+	/**
+	 * Reads from the buffer's position up to its limit.
+	 */
+	static final class Input extends InputStream {
+		private final ByteBuffer buffer;
+
+		Input(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) {
+			int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * Writes at the buffer's position. When the buffer is full,
+	 * {@link #makeRoom(int)} is asked for a buffer with more room; by default
+	 * that throws BufferOverflowException.
+	 * 
+	 * <code>mark</code> is the start of the data still being written, which
+	 * makeRoom must keep (and move <code>mark</code> along with); the data
+	 * before it is complete and may be sent elsewhere.
+	 */
+	static class Output extends OutputStream {
+		ByteBuffer buffer;
+		int mark;
+
+		Output(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.mark = buffer.position();
+		}
+
+		/**
+		 * @return a buffer with at least <code>needed</code> bytes remaining,
+		 * holding the data from <code>mark</code> on
+		 */
+		protected ByteBuffer makeRoom(int needed) throws IOException {
+			throw new BufferOverflowException();
+		}
+
+		void ensure(int needed) throws IOException {
+			if (buffer.remaining() < needed) {
+				buffer = makeRoom(needed);
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			ensure(1);
+			buffer.put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ensure(len);
+			buffer.put(b, off, len);
+		}
+	}
+}
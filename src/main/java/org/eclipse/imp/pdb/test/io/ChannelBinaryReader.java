@@ -0,0 +1,125 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Reads the frames written by {@link ChannelBinaryWriter} from a blocking
+ * channel, one value per {@link #read()}.
+ * 
+ * The channel is read in bulk into a pooled direct buffer (see
+ * {@link BufferPool}), and values are decoded straight out of that buffer.
+ * Bytes read past the current frame stay in the buffer for the next read,
+ * so one reader should be used for the whole channel.
+ */
+public class ChannelBinaryReader implements Closeable {
+	private final IValueFactory vf;
+	private final ElementCodec codec;
+	private final ReadableByteChannel in;
+	private ByteBuffer buffer;
+
+	public ChannelBinaryReader(IValueFactory vf, TypeStore ts, ReadableByteChannel in) {
+		this.vf = vf;
+		this.codec = new ElementCodec(ts);
+		this.in = in;
+		this.buffer = BufferPool.SHARED.acquire(BufferPool.BUFFER_SIZE);
+		this.buffer.flip();
+	}
+
+	/**
+	 * Decodes one frame at the position of <code>source</code> and moves the
+	 * position past it, for callers that manage their own buffers.
+	 * 
+	 * @throws BufferUnderflowException if the buffer ends within the frame;
+	 * the position of <code>source</code> is then unchanged
+	 */
+	public static IValue decode(IValueFactory vf, TypeStore ts, ByteBuffer source) throws IOException {
+		int start = source.position();
+		int length = VarInt.read(source);
+		if (length == -1 || source.remaining() < length) {
+			source.position(start);
+			throw new BufferUnderflowException();
+		}
+		return new ElementCodec(ts).decode(vf, source, length);
+	}
+
+	/**
+	 * @return the next value, or null if the channel ended between frames
+	 */
+	public IValue read() throws IOException {
+		if (buffer == null) {
+			throw new IllegalStateException("Reader is closed");
+		}
+		int length;
+		while ((length = VarInt.read(buffer)) == -1) {
+			if (!fill(VarInt.MAX_LENGTH)) {
+				if (buffer.hasRemaining()) {
+					throw new EOFException("Channel ended within a frame length");
+				}
+				return null;
+			}
+		}
+		while (buffer.remaining() < length) {
+			if (!fill(length)) {
+				throw new EOFException("Channel ended within a frame");
+			}
+		}
+		return codec.decode(vf, buffer, length);
+	}
+
+	/**
+	 * Reads more bytes after the unread ones, moving to a larger buffer if
+	 * <code>needed</code> bytes would not fit.
+	 * 
+	 * @return false if the channel has ended
+	 */
+	private boolean fill(int needed) throws IOException {
+		if (buffer.capacity() < needed) {
+			ByteBuffer larger = BufferPool.SHARED.acquire(Math.max(buffer.capacity() * 2, needed));
+			larger.put(buffer);
+			BufferPool.SHARED.release(buffer);
+			buffer = larger;
+		}
+		else {
+			buffer.compact();
+		}
+		int n;
+		try {
+			do {
+				n = in.read(buffer);
+			}
+			while (n == 0);
+		}
+		finally {
+			buffer.flip();
+		}
+		return n > 0;
+	}
+
+	/**
+	 * Returns the buffer to the pool and closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (buffer != null) {
+			BufferPool.SHARED.release(buffer);
+			buffer = null;
+			in.close();
+		}
+	}
+}
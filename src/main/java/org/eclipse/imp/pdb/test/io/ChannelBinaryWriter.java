@@ -0,0 +1,182 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryWriter;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Writes values to a channel, e.g. a pipe, socket or file, as a sequence of
+ * frames: a varint length followed by the value in the PBF binary format.
+ * 
+ * Values are encoded straight into a pooled direct buffer (see
+ * {@link BufferPool}), which goes to the channel in one write when it is
+ * full or on {@link #flush()}; there is no intermediate byte array. The
+ * length of each frame is reserved as a padded five-byte varint before the
+ * value is encoded and filled in afterwards.
+ * 
+ * Read the frames back with {@link ChannelBinaryReader}.
+ */
+public class ChannelBinaryWriter implements Closeable, Flushable {
+	private final WritableByteChannel out;
+	private final TypeStore ts;
+	private final FrameOutput output;
+	private long count = 0;
+
+	public ChannelBinaryWriter(WritableByteChannel out, TypeStore ts) {
+		this.out = out;
+		this.ts = ts;
+		this.output = new FrameOutput(BufferPool.SHARED.acquire(BufferPool.BUFFER_SIZE));
+	}
+
+	/**
+	 * Writes a single value and flushes; convenient for one-off messages.
+	 */
+	public static void write(IValue value, WritableByteChannel out, TypeStore ts) throws IOException {
+		ChannelBinaryWriter writer = new ChannelBinaryWriter(out, ts);
+		try {
+			writer.write(value);
+			writer.flush();
+		}
+		finally {
+			writer.release();
+		}
+	}
+
+	/**
+	 * Encodes one frame at the position of <code>target</code>, for callers
+	 * that manage their own buffers.
+	 * 
+	 * @throws BufferOverflowException if the frame does not fit; the
+	 * position of <code>target</code> is then unchanged
+	 */
+	public static void encode(IValue value, ByteBuffer target, TypeStore ts) throws IOException {
+		frame(value, new ByteBufferStreams.Output(target), ts);
+	}
+
+	/**
+	 * Appends one frame to the output. If encoding fails, the reserved
+	 * header and partial frame are dropped again, so the output ends with
+	 * the last complete frame.
+	 */
+	private static void frame(IValue value, ByteBufferStreams.Output output, TypeStore ts) throws IOException {
+		output.mark = output.buffer.position();
+		try {
+			output.ensure(VarInt.MAX_LENGTH);
+			output.buffer.position(output.mark + VarInt.MAX_LENGTH);
+			new BinaryWriter(value, output, ts).serialize();
+		}
+		catch (Throwable e) {
+			// the frame may have moved while encoding; mark follows it
+			output.buffer.position(output.mark);
+			throw e;
+		}
+		ByteBuffer buffer = output.buffer;
+		VarInt.writePadded(buffer, output.mark, buffer.position() - output.mark - VarInt.MAX_LENGTH);
+	}
+
+	public void write(IValue value) throws IOException {
+		checkOpen();
+		frame(value, output, ts);
+		count++;
+	}
+
+	private void checkOpen() {
+		if (output.buffer == null) {
+			throw new IllegalStateException("Writer is closed");
+		}
+	}
+
+	/**
+	 * @return the number of values written so far
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Sends all complete frames to the channel.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkOpen();
+		ByteBuffer buffer = output.buffer;
+		buffer.flip();
+		drain(buffer);
+		buffer.clear();
+	}
+
+	private void drain(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private void release() {
+		BufferPool.SHARED.release(output.buffer);
+		output.buffer = null;
+	}
+
+	/**
+	 * Flushes, returns the buffer to the pool and closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (output.buffer == null) {
+			return;
+		}
+		try {
+			flush();
+		}
+		finally {
+			release();
+			out.close();
+		}
+	}
+
+	/**
+	 * Makes room by sending the complete frames before the current one to
+	 * the channel, and by moving to a larger buffer if a single frame does
+	 * not fit.
+	 */
+	private final class FrameOutput extends ByteBufferStreams.Output {
+		FrameOutput(ByteBuffer buffer) {
+			super(buffer);
+		}
+
+		@Override
+		protected ByteBuffer makeRoom(int needed) throws IOException {
+			int end = buffer.position();
+			if (mark > 0) {
+				buffer.position(0);
+				buffer.limit(mark);
+				drain(buffer);
+				buffer.limit(end);
+				buffer.position(mark);
+				buffer.compact();
+				mark = 0;
+			}
+			if (buffer.remaining() >= needed) {
+				return buffer;
+			}
+			ByteBuffer larger = BufferPool.SHARED.acquire(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+			buffer.flip();
+			larger.put(buffer);
+			BufferPool.SHARED.release(buffer);
+			return larger;
+		}
+	}
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.imp.pdb.facts.IList;
+import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.IMap;
+import org.eclipse.imp.pdb.facts.IMapWriter;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+import org.eclipse.imp.pdb.test.type.ConcurrentTypeStore;
+
+/**
+ * Reads a collection written by {@link ChunkedBinaryWriter}, decoding its
+ * segments in parallel on a fork/join pool.
+ * 
+ * Each segment is read with a positional read on the file channel, decoded
+ * into a set, list or map of its own, and the partial results are merged
+ * pairwise (union, concatenation in segment order, or join) as the tasks
+ * complete, so merging is parallel too.
+ * 
+ * The value factory must be safe to use from several threads. The PBF
+ * reader declares the types it reads into a type store, so the workers
+ * share a {@link ConcurrentTypeStore} that imports the given one; that
+ * store should not change during a read.
+ */
+public class ChunkedBinaryReader implements Closeable {
+	private final IValueFactory vf;
+	private final TypeStore ts;
+	private final FileChannel channel;
+	private final CollectionKind kind;
+	private final long count;
+	private final long[] starts;
+	private final int[] counts;
+	private final long directoryPosition;
+
+	public ChunkedBinaryReader(IValueFactory vf, TypeStore ts, File file) throws IOException {
+		this.vf = vf;
+		this.ts = ts;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			long size = channel.size();
+			if (size < ChunkedBinaryWriter.HEADER_SIZE + ChunkedBinaryWriter.FOOTER_SIZE) {
+				throw new IOException("Not a chunked PDB binary file: " + file);
+			}
+			ByteBuffer header = read(0, ChunkedBinaryWriter.HEADER_SIZE);
+			ByteBuffer footer = read(size - ChunkedBinaryWriter.FOOTER_SIZE, ChunkedBinaryWriter.FOOTER_SIZE);
+			if (header.getInt(0) != ChunkedBinaryWriter.MAGIC_INT || footer.getInt(24) != ChunkedBinaryWriter.MAGIC_INT
+					|| header.get(4) != ChunkedBinaryWriter.VERSION || footer.getInt(20) != ChunkedBinaryWriter.VERSION) {
+				throw new IOException("Not a chunked PDB binary file, or unsupported version: " + file);
+			}
+			this.directoryPosition = footer.getLong(0);
+			this.count = footer.getLong(8);
+			int segments = footer.getInt(16);
+			if (segments < 0 || count < 0 || directoryPosition < ChunkedBinaryWriter.HEADER_SIZE
+					|| directoryPosition + (long) segments * ChunkedBinaryWriter.DIRECTORY_ENTRY_SIZE > size - ChunkedBinaryWriter.FOOTER_SIZE) {
+				throw new IOException("Corrupt or truncated chunked PDB binary file: " + file);
+			}
+			try {
+				this.kind = CollectionKind.fromCode(header.get(5));
+			}
+			catch (IllegalArgumentException e) {
+				throw new IOException("Corrupt chunked PDB binary file: " + file, e);
+			}
+
+			ByteBuffer directory = read(directoryPosition, segments * ChunkedBinaryWriter.DIRECTORY_ENTRY_SIZE);
+			this.starts = new long[segments];
+			this.counts = new int[segments];
+			long previous = ChunkedBinaryWriter.HEADER_SIZE;
+			for (int i = 0; i < segments; i++) {
+				starts[i] = directory.getLong();
+				counts[i] = directory.getInt();
+				if (starts[i] < previous || starts[i] > directoryPosition || counts[i] < 0) {
+					throw new IOException("Corrupt directory entry " + i + " in " + file);
+				}
+				previous = starts[i];
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new EOFException("File ended within a segment");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	public CollectionKind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the number of elements, or entries for maps
+	 */
+	public long size() {
+		return count;
+	}
+
+	public int segments() {
+		return starts.length;
+	}
+
+	/**
+	 * Decodes segment <code>i</code> on this thread.
+	 * 
+	 * @return the elements of the segment as a collection of the file's kind
+	 */
+	public IValue readSegment(int i) throws IOException {
+		return decode(i, new ElementCodec(ts));
+	}
+
+	private IValue decode(int i, ElementCodec codec) throws IOException {
+		long end = i + 1 < starts.length ? starts[i + 1] : directoryPosition;
+		ByteBuffer data = read(starts[i], (int) (end - starts[i]));
+		switch (kind) {
+		case SET:
+			ISetWriter sw = vf.setWriter();
+			for (int n = counts[i]; n > 0; n--) {
+				sw.insert(frame(data, codec));
+			}
+			return sw.done();
+		case LIST:
+			IListWriter lw = vf.listWriter();
+			for (int n = counts[i]; n > 0; n--) {
+				lw.append(frame(data, codec));
+			}
+			return lw.done();
+		default:
+			IMapWriter mw = vf.mapWriter();
+			for (int n = counts[i]; n > 0; n--) {
+				IValue key = frame(data, codec);
+				mw.put(key, frame(data, codec));
+			}
+			return mw.done();
+		}
+	}
+
+	private IValue frame(ByteBuffer data, ElementCodec codec) throws IOException {
+		int length = VarInt.read(data);
+		if (length == -1 || data.remaining() < length) {
+			throw new IOException("Segment ends within a frame");
+		}
+		return codec.decode(vf, data, length);
+	}
+
+	/**
+	 * Reads the whole collection on a new pool with one thread per processor.
+	 */
+	public IValue readAll() throws IOException {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			return readAll(pool);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Reads the whole collection, decoding and merging segments on
+	 * <code>pool</code>.
+	 */
+	public IValue readAll(ForkJoinPool pool) throws IOException {
+		if (starts.length == 0) {
+			switch (kind) {
+			case SET:
+				return vf.setWriter().done();
+			case LIST:
+				return vf.listWriter().done();
+			default:
+				return vf.mapWriter().done();
+			}
+		}
+		ConcurrentTypeStore store = new ConcurrentTypeStore();
+		store.importStore(ts);
+		try {
+			return pool.invoke(new Segments(0, starts.length, store));
+		}
+		catch (RuntimeException e) {
+			for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+			}
+			throw e;
+		}
+	}
+
+	private IValue merge(IValue left, IValue right) {
+		switch (kind) {
+		case SET:
+			return ((ISet) left).union((ISet) right);
+		case LIST:
+			return ((IList) left).concat((IList) right);
+		default:
+			return ((IMap) left).join((IMap) right);
+		}
+	}
+
+	/**
+	 * Decodes segments <code>from</code> (inclusive) to <code>to</code>
+	 * (exclusive) and merges them. An IOException surfaces as an
+	 * IllegalStateException with the IOException as cause.
+	 */
+	private final class Segments extends RecursiveTask<IValue> {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final TypeStore store;
+
+		Segments(int from, int to, TypeStore store) {
+			this.from = from;
+			this.to = to;
+			this.store = store;
+		}
+
+		@Override
+		protected IValue compute() {
+			if (to - from == 1) {
+				try {
+					return decode(from, new ElementCodec(store));
+				}
+				catch (IOException e) {
+					throw new IllegalStateException("Could not read segment " + from, e);
+				}
+			}
+			int middle = (from + to) >>> 1;
+			Segments left = new Segments(from, middle, store);
+			left.fork();
+			IValue right = new Segments(middle, to, store).compute();
+			return merge(left.join(), right);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.eclipse.imp.pdb.facts.IList;
+import org.eclipse.imp.pdb.facts.IMap;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Writes a set, list or map to a file in segments of a fixed number of
+ * elements, which {@link ChunkedBinaryReader} decodes in parallel.
+ * 
+ * Layout, all numbers big-endian:
+ * <pre>
+ *   header     "PDBC", version, kind, 2 bytes padding
+ *   segments   per segment, the length-prefixed PBF frames of its elements
+ *              (map: key, then value)
+ *   directory  per segment, its start (long) and number of elements (int)
+ *   footer     directory position, element count (longs), segment count,
+ *              version and the magic (ints)
+ * </pre>
+ * Every frame is self-contained, so a segment can be decoded without any
+ * other. Only the directory, 12 bytes per segment, is kept in memory until
+ * {@link #close()}.
+ */
+public class ChunkedBinaryWriter implements Closeable {
+	static final byte[] MAGIC = {'P', 'D', 'B', 'C'};
+	static final int MAGIC_INT = 0x50444243;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+	static final int FOOTER_SIZE = 28;
+	static final int DIRECTORY_ENTRY_SIZE = 12;
+
+	/**
+	 * Elements per segment unless specified: small enough for a collection
+	 * of 10^5 elements to give a few dozen segments, large enough that the
+	 * directory and the merging of partial results stay cheap.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+	private final DataOutputStream out;
+	private final CollectionKind kind;
+	private final ElementCodec codec;
+	private final int segmentSize;
+	private long position;
+	private long[] starts = new long[64];
+	private int[] counts = new int[64];
+	private int segments = 0;
+	private long count = 0;
+	private boolean closed = false;
+
+	public ChunkedBinaryWriter(File file, TypeStore ts, CollectionKind kind) throws IOException {
+		this(file, ts, kind, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public ChunkedBinaryWriter(File file, TypeStore ts, CollectionKind kind, int segmentSize) throws IOException {
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("segmentSize should be positive: " + segmentSize);
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		this.kind = kind;
+		this.codec = new ElementCodec(ts);
+		this.segmentSize = segmentSize;
+
+		out.write(MAGIC);
+		out.write(VERSION);
+		out.write(kind.ordinal());
+		out.write(0);
+		out.write(0);
+		position = HEADER_SIZE;
+	}
+
+	/**
+	 * Writes a whole collection to a file.
+	 */
+	public static void write(IValue collection, File file, TypeStore ts, int segmentSize) throws IOException {
+		CollectionKind kind = CollectionKind.of(collection);
+		try (ChunkedBinaryWriter writer = new ChunkedBinaryWriter(file, ts, kind, segmentSize)) {
+			switch (kind) {
+			case SET:
+				writer.writeAll(((ISet) collection).iterator());
+				break;
+			case LIST:
+				writer.writeAll(((IList) collection).iterator());
+				break;
+			case MAP:
+				IMap map = (IMap) collection;
+				for (IValue key : map) {
+					writer.put(key, map.get(key));
+				}
+				break;
+			}
+		}
+	}
+
+	public static void write(IValue collection, File file, TypeStore ts) throws IOException {
+		write(collection, file, ts, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public void write(IValue element) throws IOException {
+		if (kind == CollectionKind.MAP) {
+			throw new IllegalStateException("Use put(key, value) for maps");
+		}
+		element();
+		frame(element);
+	}
+
+	public void writeAll(Iterator<? extends IValue> elements) throws IOException {
+		while (elements.hasNext()) {
+			write(elements.next());
+		}
+	}
+
+	public void put(IValue key, IValue value) throws IOException {
+		if (kind != CollectionKind.MAP) {
+			throw new IllegalStateException("put(key, value) is only allowed on maps");
+		}
+		element();
+		frame(key);
+		frame(value);
+	}
+
+	/**
+	 * Counts an element, starting a new segment when the current one is full.
+	 */
+	private void element() {
+		if (closed) {
+			throw new IllegalStateException("Writer is already closed");
+		}
+		if (segments == 0 || counts[segments - 1] == segmentSize) {
+			if (segments == starts.length) {
+				starts = Arrays.copyOf(starts, segments * 2);
+				counts = Arrays.copyOf(counts, segments * 2);
+			}
+			starts[segments] = position;
+			counts[segments] = 0;
+			segments++;
+		}
+		counts[segments - 1]++;
+		count++;
+	}
+
+	private void frame(IValue value) throws IOException {
+		int length = codec.encode(value);
+		codec.writeFramed(out);
+		position += VarInt.size(length) + length;
+	}
+
+	/**
+	 * @return the number of elements (or map entries) written so far
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Writes the directory and footer and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		long directoryPosition = position;
+		for (int i = 0; i < segments; i++) {
+			out.writeLong(starts[i]);
+			out.writeInt(counts[i]);
+		}
+
+		out.writeLong(directoryPosition);
+		out.writeLong(count);
+		out.writeInt(segments);
+		out.writeInt(VERSION);
+		out.writeInt(MAGIC_INT);
+		out.close();
+	}
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import org.eclipse.imp.pdb.facts.IValue;
+
+/**
+ * The kinds of top-level collection the element-wise binary formats store.
+ */
+public enum CollectionKind {
+	SET, LIST, MAP;
+
+	static CollectionKind of(IValue collection) {
+		if (collection.getType().isSet()) {
+			return SET;
+		}
+		if (collection.getType().isList()) {
+			return LIST;
+		}
+		if (collection.getType().isMap()) {
+			return MAP;
+		}
+		throw new IllegalArgumentException("Not a set, list or map: " + collection.getType());
+	}
+
+	static CollectionKind fromCode(int code) {
+		CollectionKind[] kinds = values();
+		if (code < 0 || code >= kinds.length) {
+			throw new IllegalArgumentException("Unknown collection kind: " + code);
+		}
+		return kinds[code];
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryReader;
+import org.eclipse.imp.pdb.facts.io.binary.BinaryWriter;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Encodes single elements with the PBF BinaryWriter into a reused buffer,
+ * and decodes them again with BinaryReader. Each element is self-contained,
+ * so any element can be decoded without the ones before it.
+ */
+final class ElementCodec {
+	private final TypeStore ts;
+	private final Buffer buffer = new Buffer();
+
+	ElementCodec(TypeStore ts) {
+		this.ts = ts;
+	}
+
+	/**
+	 * Encodes <code>value</code> into the buffer, replacing what was there.
+	 * 
+	 * @return the number of bytes written
+	 */
+	int encode(IValue value) throws IOException {
+		buffer.reset();
+		new BinaryWriter(value, buffer, ts).serialize();
+		return buffer.size();
+	}
+
+	/**
+	 * Writes the last encoded element, prefixed with its length.
+	 */
+	void writeFramed(OutputStream out) throws IOException {
+		VarInt.write(out, buffer.size());
+		buffer.writeTo(out);
+	}
+
+	/**
+	 * @return the buffer holding the last encoded element in its first
+	 * {@link #encode(IValue)} bytes; it is overwritten by the next encode
+	 */
+	byte[] bytes() {
+		return buffer.array();
+	}
+
+	IValue decode(IValueFactory vf, byte[] data, int offset, int length) throws IOException {
+		return new BinaryReader(vf, ts, new ByteArrayInputStream(data, offset, length)).deserialize();
+	}
+
+	/**
+	 * Decodes <code>length</code> bytes from the position of
+	 * <code>source</code>, and moves the position past them.
+	 */
+	IValue decode(IValueFactory vf, ByteBuffer source, int length) throws IOException {
+		int limit = source.limit();
+		int end = source.position() + length;
+		source.limit(end);
+		try {
+			return new BinaryReader(vf, ts, new ByteBufferStreams.Input(source)).deserialize();
+		}
+		finally {
+			source.limit(limit);
+			source.position(end);
+		}
+	}
+
+	private static final class Buffer extends ByteArrayOutputStream {
+		Buffer() {
+			super(256);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+	}
+}
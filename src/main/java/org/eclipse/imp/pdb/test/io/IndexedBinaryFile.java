@@ -0,0 +1,302 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.IMapWriter;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Random access to a collection written by {@link IndexedBinaryWriter}.
+ * 
+ * The file is mapped into memory with FileChannel.map, in segments of at
+ * most 1GB, so files larger than 2GB work too. Point lookups only touch the
+ * pages of the index entries they need and of the requested value: get(i)
+ * reads two offsets, contains(key) binary-searches the sorted hashes and
+ * decodes only candidates with an equal hash.
+ * 
+ * The index holds the hash codes of the value implementation that wrote the
+ * file, so the file must be read with the same one; otherwise lookups would
+ * silently miss. Opening a file decodes a few elements and checks their
+ * hash codes against the index, and fails if they differ.
+ * 
+ * Instances are not thread-safe.
+ */
+public class IndexedBinaryFile implements Closeable {
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+	private final IValueFactory vf;
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private final CollectionKind kind;
+	private final ElementCodec codec;
+	private final long offsetsPosition;
+	private final long hashesPosition;
+	private final int count;
+	private final int slots;
+	private byte[] buffer = new byte[256];
+
+	public IndexedBinaryFile(IValueFactory vf, TypeStore ts, File file) throws IOException {
+		this.vf = vf;
+		this.codec = new ElementCodec(ts);
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			long size = channel.size();
+			if (size < IndexedBinaryWriter.HEADER_SIZE + IndexedBinaryWriter.FOOTER_SIZE) {
+				throw new IOException("Not an indexed PDB binary file: " + file);
+			}
+			int n = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+			segments = new MappedByteBuffer[n];
+			for (int i = 0; i < n; i++) {
+				long start = (long) i << SEGMENT_BITS;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+
+			long footer = size - IndexedBinaryWriter.FOOTER_SIZE;
+			if (readInt(0) != IndexedBinaryWriter.MAGIC_INT || readInt(footer + 28) != IndexedBinaryWriter.MAGIC_INT
+					|| segments[0].get(4) != IndexedBinaryWriter.VERSION || readInt(footer + 24) != IndexedBinaryWriter.VERSION) {
+				throw new IOException("Not an indexed PDB binary file, or unsupported version: " + file);
+			}
+			this.offsetsPosition = readLong(footer);
+			this.hashesPosition = readLong(footer + 8);
+			this.count = (int) readLong(footer + 16);
+			this.kind = CollectionKind.fromCode(segments[0].get(5));
+			this.slots = kind == CollectionKind.MAP ? 2 : 1;
+
+			checkHashes(file);
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes the first, middle and last entry of the hash index and checks
+	 * that the value factory gives them the hash codes stored in the file.
+	 */
+	private void checkHashes(File file) throws IOException {
+		if (count == 0) {
+			return;
+		}
+		for (int k : new int[] {0, count / 2, count - 1}) {
+			long entry = hashEntry(k);
+			if (decode((int) entry * slots).hashCode() != (int) (entry >>> 32)) {
+				throw new IOException("The hash codes in " + file + " were computed by a different value implementation");
+			}
+		}
+	}
+
+	public CollectionKind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the number of elements, or entries for maps
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return element i of a set or list, or key i of a map, in the order
+	 * they were written
+	 */
+	public IValue get(int i) throws IOException {
+		checkIndex(i);
+		return decode(i * slots);
+	}
+
+	/**
+	 * @return value i of a map
+	 */
+	public IValue getValue(int i) throws IOException {
+		if (kind != CollectionKind.MAP) {
+			throw new UnsupportedOperationException("Only maps have values");
+		}
+		checkIndex(i);
+		return decode(i * 2 + 1);
+	}
+
+	/**
+	 * @return whether the set or list contains <code>element</code>, or the
+	 * map contains it as a key
+	 */
+	public boolean contains(IValue element) throws IOException {
+		return indexOf(element) != -1;
+	}
+
+	/**
+	 * @return the value for <code>key</code> in a map, or null
+	 */
+	public IValue lookup(IValue key) throws IOException {
+		int i = indexOf(key);
+		return i == -1 ? null : getValue(i);
+	}
+
+	/**
+	 * @return the number of an element (or key) equal to <code>element</code>, or -1
+	 */
+	public int indexOf(IValue element) throws IOException {
+		long hash = (long) element.hashCode() << 32;
+		int lo = 0;
+		int hi = count;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (hashEntry(mid) < hash) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		for (int k = lo; k < count; k++) {
+			long entry = hashEntry(k);
+			if ((entry & 0xffffffff00000000L) != hash) {
+				break;
+			}
+			int i = (int) entry;
+			if (decode(i * slots).isEqual(element)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Iterates over elements <code>from</code> (inclusive) to <code>to</code>
+	 * (exclusive); map entries come back as key/value tuples. An IOException
+	 * while reading surfaces as an IllegalStateException.
+	 */
+	public Iterable<IValue> range(final int from, final int to) {
+		if (from < 0 || to > count || from > to) {
+			throw new IndexOutOfBoundsException("range " + from + ".." + to + " of " + count);
+		}
+		return new Iterable<IValue>() {
+			@Override
+			public Iterator<IValue> iterator() {
+				return new Iterator<IValue>() {
+					private int i = from;
+
+					@Override
+					public boolean hasNext() {
+						return i < to;
+					}
+
+					@Override
+					public IValue next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						try {
+							IValue result = kind == CollectionKind.MAP ? vf.tuple(get(i), getValue(i)) : get(i);
+							i++;
+							return result;
+						} catch (IOException e) {
+							throw new IllegalStateException("Could not read element " + i, e);
+						}
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Decodes the whole collection.
+	 */
+	public IValue readAll() throws IOException {
+		switch (kind) {
+		case SET:
+			ISetWriter sw = vf.setWriter();
+			for (int i = 0; i < count; i++) {
+				sw.insert(get(i));
+			}
+			return sw.done();
+		case LIST:
+			IListWriter lw = vf.listWriter();
+			for (int i = 0; i < count; i++) {
+				lw.append(get(i));
+			}
+			return lw.done();
+		default:
+			IMapWriter mw = vf.mapWriter();
+			for (int i = 0; i < count; i++) {
+				mw.put(get(i), getValue(i));
+			}
+			return mw.done();
+		}
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException("element " + i + " of " + count);
+		}
+	}
+
+	private IValue decode(int slot) throws IOException {
+		long start = readLong(offsetsPosition + 8L * slot);
+		int length = (int) (readLong(offsetsPosition + 8L * (slot + 1)) - start);
+		if (length > buffer.length) {
+			buffer = new byte[Math.max(length, buffer.length * 2)];
+		}
+		readBytes(start, buffer, length);
+		return codec.decode(vf, buffer, 0, length);
+	}
+
+	private long hashEntry(int k) {
+		return readLong(hashesPosition + 8L * k);
+	}
+
+	// index entries are 8-byte aligned and segments are a multiple of 8 bytes,
+	// so a long or int never straddles two segments
+	private long readLong(long position) {
+		return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+	}
+
+	private int readInt(long position) {
+		return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & (SEGMENT_SIZE - 1)));
+	}
+
+	private void readBytes(long position, byte[] dst, int length) {
+		int done = 0;
+		while (done < length) {
+			MappedByteBuffer segment = segments[(int) ((position + done) >>> SEGMENT_BITS)];
+			int offset = (int) ((position + done) & (SEGMENT_SIZE - 1));
+			int n = Math.min(length - done, segment.capacity() - offset);
+			ByteBuffer view = segment.duplicate();
+			view.position(offset);
+			view.get(dst, done, n);
+			done += n;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
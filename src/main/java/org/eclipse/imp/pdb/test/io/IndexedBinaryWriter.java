@@ -0,0 +1,219 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.eclipse.imp.pdb.facts.IList;
+import org.eclipse.imp.pdb.facts.IMap;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Writes a set, list or map to a file that {@link IndexedBinaryFile} can
+ * read randomly, through a memory mapping, without decoding the rest.
+ * 
+ * Layout, all numbers big-endian and all sections 8-byte aligned:
+ * <pre>
+ *   header   "PDBI", version, kind, 2 bytes padding
+ *   data     the PBF encoding of every element (map: key, then value)
+ *   offsets  count * slots + 1 longs: start of every encoded value, and
+ *            the end of the data; slots is 2 for maps and 1 otherwise
+ *   hashes   count longs, sorted: hashCode of the element (map: key) in
+ *            the upper half, element number in the lower half
+ *   footer   offsets position, hashes position, count (longs), version and
+ *            the magic (ints)
+ * </pre>
+ * The offsets and hashes are kept in memory until {@link #close()}, at 16
+ * bytes per element; the values themselves are not.
+ * 
+ * Hash codes are stored, so a file must be read with the same version of
+ * the value implementation that wrote it; {@link IndexedBinaryFile} checks
+ * this when it opens the file.
+ */
+public class IndexedBinaryWriter implements Closeable {
+	static final byte[] MAGIC = {'P', 'D', 'B', 'I'};
+	static final int MAGIC_INT = 0x50444249;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+	static final int FOOTER_SIZE = 32;
+
+	private final DataOutputStream out;
+	private final CollectionKind kind;
+	private final ElementCodec codec;
+	private long position;
+	private long[] offsets = new long[1024];
+	private int slots = 0;
+	private long[] hashes = new long[512];
+	private int count = 0;
+	private boolean closed = false;
+	private boolean failed = false;
+
+	public IndexedBinaryWriter(File file, TypeStore ts, CollectionKind kind) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		this.kind = kind;
+		this.codec = new ElementCodec(ts);
+
+		out.write(MAGIC);
+		out.write(VERSION);
+		out.write(kind.ordinal());
+		out.write(0);
+		out.write(0);
+		position = HEADER_SIZE;
+	}
+
+	/**
+	 * Writes a whole collection to a file.
+	 */
+	public static void write(IValue collection, File file, TypeStore ts) throws IOException {
+		CollectionKind kind = CollectionKind.of(collection);
+		try (IndexedBinaryWriter writer = new IndexedBinaryWriter(file, ts, kind)) {
+			switch (kind) {
+			case SET:
+				writer.writeAll(((ISet) collection).iterator());
+				break;
+			case LIST:
+				writer.writeAll(((IList) collection).iterator());
+				break;
+			case MAP:
+				IMap map = (IMap) collection;
+				for (IValue key : map) {
+					writer.put(key, map.get(key));
+				}
+				break;
+			}
+		}
+	}
+
+	public void write(IValue element) throws IOException {
+		if (kind == CollectionKind.MAP) {
+			throw new IllegalStateException("Use put(key, value) for maps");
+		}
+		checkWritable();
+		long start = position;
+		try {
+			encode(element);
+		}
+		catch (Throwable e) {
+			failed = true;
+			throw e;
+		}
+		offset(start);
+		hash(element);
+	}
+
+	public void writeAll(Iterator<? extends IValue> elements) throws IOException {
+		while (elements.hasNext()) {
+			write(elements.next());
+		}
+	}
+
+	public void put(IValue key, IValue value) throws IOException {
+		if (kind != CollectionKind.MAP) {
+			throw new IllegalStateException("put(key, value) is only allowed on maps");
+		}
+		checkWritable();
+		long keyStart = position;
+		long valueStart;
+		try {
+			encode(key);
+			valueStart = position;
+			encode(value);
+		}
+		catch (Throwable e) {
+			failed = true;
+			throw e;
+		}
+		offset(keyStart);
+		offset(valueStart);
+		hash(key);
+	}
+
+	private void checkWritable() {
+		if (closed) {
+			throw new IllegalStateException("Writer is already closed");
+		}
+		if (failed) {
+			throw new IllegalStateException("Writer failed on an earlier element");
+		}
+	}
+
+	private void hash(IValue element) {
+		if (count == hashes.length) {
+			hashes = Arrays.copyOf(hashes, count * 2);
+		}
+		hashes[count] = ((long) element.hashCode() << 32) | count;
+		count++;
+	}
+
+	private void offset(long start) {
+		if (slots == offsets.length) {
+			offsets = Arrays.copyOf(offsets, slots * 2);
+		}
+		offsets[slots++] = start;
+	}
+
+	private void encode(IValue value) throws IOException {
+		int length = codec.encode(value);
+		out.write(codec.bytes(), 0, length);
+		position += length;
+	}
+
+	/**
+	 * Writes the index and footer and closes the file. If an element failed
+	 * to encode or write, the index would not match the data, so the file is
+	 * closed without them and {@link IndexedBinaryFile} will reject it.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (failed) {
+			out.close();
+			return;
+		}
+
+		long dataEnd = position;
+		while (position % 8 != 0) {
+			out.write(0);
+			position++;
+		}
+
+		long offsetsPosition = position;
+		for (int i = 0; i < slots; i++) {
+			out.writeLong(offsets[i]);
+		}
+		out.writeLong(dataEnd);
+		position += 8L * (slots + 1);
+
+		long hashesPosition = position;
+		long[] sorted = Arrays.copyOf(hashes, count);
+		Arrays.sort(sorted);
+		for (long h : sorted) {
+			out.writeLong(h);
+		}
+		position += 8L * count;
+
+		out.writeLong(offsetsPosition);
+		out.writeLong(hashesPosition);
+		out.writeLong(count);
+		out.writeInt(VERSION);
+		out.writeInt(MAGIC_INT);
+		out.close();
+	}
+}
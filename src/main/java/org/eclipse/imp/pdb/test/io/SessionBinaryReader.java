@@ -0,0 +1,280 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import static org.eclipse.imp.pdb.test.io.SessionBinaryWriter.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.IMapWriter;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Reads the values of a session written by {@link SessionBinaryWriter}, in
+ * order, building up the same type, constructor and string tables as the
+ * writer did.
+ *
+ * Data types and constructors are looked up by name in the type store, so
+ * it needs the declarations the writer's store had for the values sent.
+ */
+public class SessionBinaryReader implements Closeable {
+	private final IValueFactory vf;
+	private final TypeStore ts;
+	private final TypeFactory tf = TypeFactory.getInstance();
+	private final DataInputStream in;
+	private final ElementCodec codec;
+	private final List<String> strings = new ArrayList<>();
+	private final List<Type> types = new ArrayList<>();
+	private final List<Type> constructors = new ArrayList<>();
+	private byte[] bytes = new byte[256];
+
+	public SessionBinaryReader(IValueFactory vf, TypeStore ts, InputStream in) throws IOException {
+		this.vf = vf;
+		this.ts = ts;
+		this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		this.codec = new ElementCodec(ts);
+
+		byte[] magic = new byte[MAGIC.length];
+		this.in.readFully(magic);
+		for (int i = 0; i < magic.length; i++) {
+			if (magic[i] != MAGIC[i]) {
+				throw new IOException("Not a PDB session stream");
+			}
+		}
+		int version = this.in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported session version: " + version);
+		}
+	}
+
+	/**
+	 * @return the next value, or null if the stream ended between values
+	 */
+	public IValue read() throws IOException {
+		int tag = in.read();
+		if (tag == -1) {
+			return null;
+		}
+		return readValue(tag);
+	}
+
+	private IValue readValue() throws IOException {
+		return readValue(in.readUnsignedByte());
+	}
+
+	private IValue readValue(int tag) throws IOException {
+		switch (tag) {
+		case PBF:
+			int length = readLength();
+			return codec.decode(vf, readBytes(length), 0, length);
+		case TRUE:
+			return vf.bool(true);
+		case FALSE:
+			return vf.bool(false);
+		case INT:
+			long zigzag = VarInt.readLong(in);
+			return vf.integer((zigzag >>> 1) ^ -(zigzag & 1));
+		case BIG_INT:
+			byte[] twosComplement = new byte[readLength()];
+			in.readFully(twosComplement);
+			return vf.integer(twosComplement);
+		case STRING:
+			return vf.string(readString());
+		case TUPLE:
+			IValue[] fields = new IValue[readLength()];
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = readValue();
+			}
+			return vf.tuple(fields);
+		case LIST:
+			IListWriter lw = vf.listWriter(readType().getElementType());
+			for (int i = readLength(); i > 0; i--) {
+				lw.append(readValue());
+			}
+			return lw.done();
+		case SET:
+			ISetWriter sw = vf.setWriter(readType().getElementType());
+			for (int i = readLength(); i > 0; i--) {
+				sw.insert(readValue());
+			}
+			return sw.done();
+		case MAP:
+			Type mapType = readType();
+			IMapWriter mw = vf.mapWriter(mapType.getKeyType(), mapType.getValueType());
+			for (int i = readLength(); i > 0; i--) {
+				IValue key = readValue();
+				mw.put(key, readValue());
+			}
+			return mw.done();
+		case NODE:
+			String name = readString();
+			IValue[] children = new IValue[readLength()];
+			for (int i = 0; i < children.length; i++) {
+				children[i] = readValue();
+			}
+			return vf.node(name, children);
+		case CONSTRUCTOR:
+			Type constructor = readConstructor();
+			IValue[] args = new IValue[constructor.getArity()];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = readValue();
+			}
+			return vf.constructor(constructor, args);
+		default:
+			throw new IOException("Unknown value tag: " + tag);
+		}
+	}
+
+	private int readLength() throws IOException {
+		int length = VarInt.read(in);
+		if (length == -1) {
+			throw new EOFException("Stream ended within a value");
+		}
+		return length;
+	}
+
+	/**
+	 * @return a buffer holding the next <code>length</code> bytes, which is
+	 * overwritten by the next call
+	 */
+	private byte[] readBytes(int length) throws IOException {
+		if (length > bytes.length) {
+			bytes = new byte[Math.max(length, bytes.length * 2)];
+		}
+		in.readFully(bytes, 0, length);
+		return bytes;
+	}
+
+	private String readString() throws IOException {
+		int ref = readLength();
+		if (ref >= FIRST_REF) {
+			return entry(strings, ref, "string");
+		}
+		int length = readLength();
+		String s = new String(readBytes(length), 0, length, StandardCharsets.UTF_8);
+		if (ref == NEW) {
+			strings.add(s);
+		}
+		return s;
+	}
+
+	private Type readType() throws IOException {
+		int ref = readLength();
+		if (ref >= FIRST_REF) {
+			return entry(types, ref, "type");
+		}
+		Type type;
+		int kind = in.readUnsignedByte();
+		switch (kind) {
+		case T_VOID:
+			type = tf.voidType();
+			break;
+		case T_VALUE:
+			type = tf.valueType();
+			break;
+		case T_BOOL:
+			type = tf.boolType();
+			break;
+		case T_INT:
+			type = tf.integerType();
+			break;
+		case T_REAL:
+			type = tf.realType();
+			break;
+		case T_RATIONAL:
+			type = tf.rationalType();
+			break;
+		case T_NUMBER:
+			type = tf.numberType();
+			break;
+		case T_STRING:
+			type = tf.stringType();
+			break;
+		case T_LOC:
+			type = tf.sourceLocationType();
+			break;
+		case T_DATETIME:
+			type = tf.dateTimeType();
+			break;
+		case T_NODE:
+			type = tf.nodeType();
+			break;
+		case T_LIST:
+			type = tf.listType(readType());
+			break;
+		case T_SET:
+			type = tf.setType(readType());
+			break;
+		case T_MAP:
+			Type key = readType();
+			type = tf.mapType(key, readType());
+			break;
+		case T_TUPLE:
+			Type[] fields = new Type[readLength()];
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = readType();
+			}
+			type = tf.tupleType(fields);
+			break;
+		case T_ADT:
+			String name = readString();
+			type = ts.lookupAbstractDataType(name);
+			if (type == null) {
+				throw new IOException("Unknown data type: " + name);
+			}
+			break;
+		default:
+			throw new IOException("Unknown type kind: " + kind);
+		}
+		types.add(type);
+		return type;
+	}
+
+	private Type readConstructor() throws IOException {
+		int ref = readLength();
+		if (ref >= FIRST_REF) {
+			return entry(constructors, ref, "constructor");
+		}
+		Type adt = readType();
+		String name = readString();
+		Type fields = readType();
+		Type constructor = ts.lookupConstructor(adt, name, fields);
+		if (constructor == null) {
+			throw new IOException("Unknown constructor: " + adt + "." + name + fields);
+		}
+		constructors.add(constructor);
+		return constructor;
+	}
+
+	private static <T> T entry(List<T> table, int ref, String what) throws IOException {
+		int index = ref - FIRST_REF;
+		if (index >= table.size()) {
+			throw new IOException("Reference to undefined " + what + " " + index);
+		}
+		return table.get(index);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,431 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.imp.pdb.facts.IBool;
+import org.eclipse.imp.pdb.facts.IConstructor;
+import org.eclipse.imp.pdb.facts.IInteger;
+import org.eclipse.imp.pdb.facts.IList;
+import org.eclipse.imp.pdb.facts.IMap;
+import org.eclipse.imp.pdb.facts.INode;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.IString;
+import org.eclipse.imp.pdb.facts.ITuple;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.facts.type.TypeFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Writes many values to one stream, for a reader that reads them in the
+ * same order, as in a request/response session. Types, constructors and
+ * short strings are written in full only the first time they occur in the
+ * session; after that they are referred to by number. A stream of many
+ * small values of a few types then costs little more than their contents.
+ *
+ * The stream starts with a header (the bytes "PDBX" and a version). Each
+ * value is a tag followed by its contents. Booleans, integers, strings,
+ * tuples, lists, sets, maps, nodes and constructors are encoded directly;
+ * other values (reals, locations, annotated nodes, collections whose type
+ * uses aliases or labels, ...) are embedded as a length-prefixed PBF frame,
+ * with its own type headers.
+ *
+ * The tables only grow, and are shared by all values of the session; at
+ * most {@value #MAX_STRINGS} strings of up to {@value #MAX_STRING_LENGTH}
+ * chars are remembered. Read the values back with
+ * {@link SessionBinaryReader} over a type store with the same declarations.
+ */
+public class SessionBinaryWriter implements Closeable, Flushable {
+	static final byte[] MAGIC = {'P', 'D', 'B', 'X'};
+	static final int VERSION = 1;
+
+	// value tags
+	static final int PBF = 0;
+	static final int TRUE = 1;
+	static final int FALSE = 2;
+	static final int INT = 3;
+	static final int BIG_INT = 4;
+	static final int STRING = 5;
+	static final int TUPLE = 6;
+	static final int LIST = 7;
+	static final int SET = 8;
+	static final int MAP = 9;
+	static final int NODE = 10;
+	static final int CONSTRUCTOR = 11;
+
+	// type kinds
+	static final int T_VOID = 0;
+	static final int T_VALUE = 1;
+	static final int T_BOOL = 2;
+	static final int T_INT = 3;
+	static final int T_REAL = 4;
+	static final int T_RATIONAL = 5;
+	static final int T_NUMBER = 6;
+	static final int T_STRING = 7;
+	static final int T_LOC = 8;
+	static final int T_DATETIME = 9;
+	static final int T_NODE = 10;
+	static final int T_LIST = 11;
+	static final int T_SET = 12;
+	static final int T_MAP = 13;
+	static final int T_TUPLE = 14;
+	static final int T_ADT = 15;
+
+	// table references: a new entry, a string that is not remembered, or
+	// the number of an entry plus FIRST_REF
+	static final int NEW = 0;
+	static final int LITERAL = 1;
+	static final int FIRST_REF = 2;
+
+	static final int MAX_STRINGS = 1 << 16;
+	static final int MAX_STRING_LENGTH = 64;
+
+	private final OutputStream out;
+	private final TypeStore ts;
+	private final TypeFactory tf = TypeFactory.getInstance();
+	private final ElementCodec codec;
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final Map<Type, Integer> types = new HashMap<>();
+	private final Map<Type, Integer> constructors = new HashMap<>();
+	private final Map<Type, Boolean> representable = new HashMap<>();
+	private long count = 0;
+
+	public SessionBinaryWriter(OutputStream out, TypeStore ts) throws IOException {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.ts = ts;
+		this.codec = new ElementCodec(ts);
+
+		this.out.write(MAGIC);
+		this.out.write(VERSION);
+	}
+
+	/**
+	 * Appends a value to the session. It is buffered; call {@link #flush()}
+	 * when the reader should see it.
+	 */
+	public void write(IValue value) throws IOException {
+		writeValue(value);
+		count++;
+	}
+
+	/**
+	 * @return the number of values written so far
+	 */
+	public long count() {
+		return count;
+	}
+
+	private void writeValue(IValue value) throws IOException {
+		if (value instanceof IBool) {
+			out.write(((IBool) value).getValue() ? TRUE : FALSE);
+		}
+		else if (value instanceof IInteger) {
+			writeInteger((IInteger) value);
+		}
+		else if (value instanceof IString) {
+			out.write(STRING);
+			writeString(((IString) value).getValue());
+		}
+		else if (value instanceof ITuple) {
+			ITuple tuple = (ITuple) value;
+			out.write(TUPLE);
+			VarInt.write(out, tuple.arity());
+			for (IValue field : tuple) {
+				writeValue(field);
+			}
+		}
+		else if (value instanceof IList && isRepresentable(value.getType())) {
+			IList list = (IList) value;
+			out.write(LIST);
+			writeType(value.getType());
+			VarInt.write(out, list.length());
+			for (IValue element : list) {
+				writeValue(element);
+			}
+		}
+		else if (value instanceof ISet && isRepresentable(value.getType())) {
+			ISet set = (ISet) value;
+			out.write(SET);
+			writeType(value.getType());
+			VarInt.write(out, set.size());
+			for (IValue element : set) {
+				writeValue(element);
+			}
+		}
+		else if (value instanceof IMap && isRepresentable(value.getType())) {
+			IMap map = (IMap) value;
+			out.write(MAP);
+			writeType(value.getType());
+			VarInt.write(out, map.size());
+			for (IValue key : map) {
+				writeValue(key);
+				writeValue(map.get(key));
+			}
+		}
+		else if (value instanceof IConstructor && !hasAnnotations((INode) value)
+				&& isRepresentableConstructor(((IConstructor) value).getConstructorType())) {
+			IConstructor constructor = (IConstructor) value;
+			out.write(CONSTRUCTOR);
+			writeConstructor(constructor.getConstructorType());
+			for (IValue child : constructor) {
+				writeValue(child);
+			}
+		}
+		else if (value instanceof INode && !(value instanceof IConstructor) && !hasAnnotations((INode) value)) {
+			INode node = (INode) value;
+			out.write(NODE);
+			writeString(node.getName());
+			VarInt.write(out, node.arity());
+			for (IValue child : node) {
+				writeValue(child);
+			}
+		}
+		else {
+			out.write(PBF);
+			codec.encode(value);
+			codec.writeFramed(out);
+		}
+	}
+
+	private static boolean hasAnnotations(INode node) {
+		return node.asAnnotatable().hasAnnotations();
+	}
+
+	private void writeInteger(IInteger value) throws IOException {
+		byte[] bytes = value.getTwosComplementRepresentation();
+		if (bytes.length <= 8) {
+			long n = value.longValue();
+			out.write(INT);
+			VarInt.writeLong(out, (n << 1) ^ (n >> 63));
+		}
+		else {
+			out.write(BIG_INT);
+			VarInt.write(out, bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private void writeString(String s) throws IOException {
+		Integer ref = strings.get(s);
+		if (ref != null) {
+			VarInt.write(out, ref + FIRST_REF);
+			return;
+		}
+		if (strings.size() < MAX_STRINGS && s.length() <= MAX_STRING_LENGTH) {
+			VarInt.write(out, NEW);
+			strings.put(s, strings.size());
+		}
+		else {
+			VarInt.write(out, LITERAL);
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		VarInt.write(out, bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Writes a reference to a representable type, and the first time also
+	 * its definition. Types inside the definition are numbered before the
+	 * type itself, in the order the reader meets them.
+	 */
+	private void writeType(Type type) throws IOException {
+		Integer ref = types.get(type);
+		if (ref != null) {
+			VarInt.write(out, ref + FIRST_REF);
+			return;
+		}
+		VarInt.write(out, NEW);
+		int kind = kind(type);
+		out.write(kind);
+		switch (kind) {
+		case T_LIST:
+		case T_SET:
+			writeType(type.getElementType());
+			break;
+		case T_MAP:
+			writeType(type.getKeyType());
+			writeType(type.getValueType());
+			break;
+		case T_TUPLE:
+			VarInt.write(out, type.getArity());
+			for (int i = 0; i < type.getArity(); i++) {
+				writeType(type.getFieldType(i));
+			}
+			break;
+		case T_ADT:
+			writeString(type.getName());
+			break;
+		default:
+			break;
+		}
+		types.put(type, types.size());
+	}
+
+	private void writeConstructor(Type constructor) throws IOException {
+		Integer ref = constructors.get(constructor);
+		if (ref != null) {
+			VarInt.write(out, ref + FIRST_REF);
+			return;
+		}
+		VarInt.write(out, NEW);
+		writeType(constructor.getAbstractDataType());
+		writeString(constructor.getName());
+		writeType(constructor.getFieldTypes());
+		constructors.put(constructor, constructors.size());
+	}
+
+	/**
+	 * @return the kind the reader rebuilds <code>type</code> from, or -1
+	 */
+	private static int kind(Type type) {
+		if (type.isAliased() || type.isParameter()) {
+			return -1;
+		}
+		if (type.isBottom()) {
+			return T_VOID;
+		}
+		if (type.isTop()) {
+			return T_VALUE;
+		}
+		if (type.isBool()) {
+			return T_BOOL;
+		}
+		if (type.isInteger()) {
+			return T_INT;
+		}
+		if (type.isReal()) {
+			return T_REAL;
+		}
+		if (type.isRational()) {
+			return T_RATIONAL;
+		}
+		if (type.isNumber()) {
+			return T_NUMBER;
+		}
+		if (type.isString()) {
+			return T_STRING;
+		}
+		if (type.isSourceLocation()) {
+			return T_LOC;
+		}
+		if (type.isDateTime()) {
+			return T_DATETIME;
+		}
+		if (type.isList()) {
+			return T_LIST;
+		}
+		if (type.isSet()) {
+			return T_SET;
+		}
+		if (type.isMap()) {
+			return T_MAP;
+		}
+		if (type.isTuple()) {
+			return T_TUPLE;
+		}
+		if (type.isAbstractData()) {
+			return T_ADT;
+		}
+		if (type.isNode()) {
+			return T_NODE;
+		}
+		return -1;
+	}
+
+	/**
+	 * A type is representable if the reader rebuilds exactly the same type
+	 * from its kind and parts; this rules out aliases, labels, type
+	 * parameters and data types that are not declared in the store.
+	 */
+	private boolean isRepresentable(Type type) {
+		Boolean known = representable.get(type);
+		if (known == null) {
+			known = rebuild(type) == type;
+			representable.put(type, known);
+		}
+		return known;
+	}
+
+	private boolean isRepresentableConstructor(Type constructor) {
+		Boolean known = representable.get(constructor);
+		if (known == null) {
+			Type adt = constructor.getAbstractDataType();
+			Type fields = constructor.getFieldTypes();
+			known = isRepresentable(adt) && isRepresentable(fields)
+					&& ts.lookupConstructor(adt, constructor.getName(), fields) == constructor;
+			representable.put(constructor, known);
+		}
+		return known;
+	}
+
+	private Type rebuild(Type type) {
+		switch (kind(type)) {
+		case T_VOID:
+			return tf.voidType();
+		case T_VALUE:
+			return tf.valueType();
+		case T_BOOL:
+			return tf.boolType();
+		case T_INT:
+			return tf.integerType();
+		case T_REAL:
+			return tf.realType();
+		case T_RATIONAL:
+			return tf.rationalType();
+		case T_NUMBER:
+			return tf.numberType();
+		case T_STRING:
+			return tf.stringType();
+		case T_LOC:
+			return tf.sourceLocationType();
+		case T_DATETIME:
+			return tf.dateTimeType();
+		case T_NODE:
+			return tf.nodeType();
+		case T_LIST:
+			return isRepresentable(type.getElementType()) ? tf.listType(type.getElementType()) : null;
+		case T_SET:
+			return isRepresentable(type.getElementType()) ? tf.setType(type.getElementType()) : null;
+		case T_MAP:
+			return isRepresentable(type.getKeyType()) && isRepresentable(type.getValueType())
+					? tf.mapType(type.getKeyType(), type.getValueType()) : null;
+		case T_TUPLE:
+			Type[] fields = new Type[type.getArity()];
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = type.getFieldType(i);
+				if (!isRepresentable(fields[i])) {
+					return null;
+				}
+			}
+			return tf.tupleType(fields);
+		case T_ADT:
+			return ts.lookupAbstractDataType(type.getName());
+		default:
+			return null;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.IMapWriter;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.ITuple;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Reads a stream written by {@link StreamingBinaryWriter} one element at a
+ * time. Only the current element is held in memory, unless the whole
+ * collection is asked for with {@link #readAll()}.
+ * 
+ * Map entries are returned as key/value tuples. The stream does not record
+ * the collection's declared type, so {@link #readAll()} builds it with the
+ * type of the elements read (see {@link StreamingBinaryWriter}).
+ */
+public class StreamingBinaryReader implements Closeable, Iterable<IValue> {
+	private final IValueFactory vf;
+	private final DataInputStream in;
+	private final CollectionKind kind;
+	private final ElementCodec codec;
+	private byte[] frame = new byte[256];
+	private boolean finished = false;
+
+	public StreamingBinaryReader(IValueFactory vf, TypeStore ts, InputStream in) throws IOException {
+		this.vf = vf;
+		this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		this.codec = new ElementCodec(ts);
+
+		byte[] magic = new byte[StreamingBinaryWriter.MAGIC.length];
+		this.in.readFully(magic);
+		for (int i = 0; i < magic.length; i++) {
+			if (magic[i] != StreamingBinaryWriter.MAGIC[i]) {
+				throw new IOException("Not a streaming PDB binary stream");
+			}
+		}
+		int version = this.in.readUnsignedByte();
+		if (version != StreamingBinaryWriter.VERSION) {
+			throw new IOException("Unsupported stream version: " + version);
+		}
+		this.kind = CollectionKind.fromCode(this.in.readUnsignedByte());
+	}
+
+	public CollectionKind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the next element (a key/value tuple for maps), or null at the
+	 * end of the stream
+	 */
+	public IValue read() throws IOException {
+		if (finished) {
+			return null;
+		}
+		IValue first = readFrame();
+		if (first == null) {
+			finished = true;
+			return null;
+		}
+		if (kind == CollectionKind.MAP) {
+			IValue value = readFrame();
+			if (value == null) {
+				throw new IOException("Map entry without a value");
+			}
+			return vf.tuple(first, value);
+		}
+		return first;
+	}
+
+	private IValue readFrame() throws IOException {
+		int length = VarInt.read(in);
+		if (length == -1) {
+			throw new EOFException("Stream ended without terminator");
+		}
+		if (length == 0) {
+			return null;
+		}
+		if (length > frame.length) {
+			frame = new byte[Math.max(length, frame.length * 2)];
+		}
+		in.readFully(frame, 0, length);
+		return codec.decode(vf, frame, 0, length);
+	}
+
+	/**
+	 * Reads the remaining elements into a single set, list or map.
+	 */
+	public IValue readAll() throws IOException {
+		IValue element;
+		switch (kind) {
+		case SET:
+			ISetWriter sw = vf.setWriter();
+			while ((element = read()) != null) {
+				sw.insert(element);
+			}
+			return sw.done();
+		case LIST:
+			IListWriter lw = vf.listWriter();
+			while ((element = read()) != null) {
+				lw.append(element);
+			}
+			return lw.done();
+		default:
+			IMapWriter mw = vf.mapWriter();
+			while ((element = read()) != null) {
+				ITuple entry = (ITuple) element;
+				mw.put(entry.get(0), entry.get(1));
+			}
+			return mw.done();
+		}
+	}
+
+	/**
+	 * Iterates over the remaining elements. An IOException while reading
+	 * surfaces as an IllegalStateException with the IOException as cause.
+	 */
+	@Override
+	public Iterator<IValue> iterator() {
+		return new Iterator<IValue>() {
+			private IValue next = null;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = read();
+					} catch (IOException e) {
+						throw new IllegalStateException("Could not read next element", e);
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public IValue next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				IValue result = next;
+				next = null;
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
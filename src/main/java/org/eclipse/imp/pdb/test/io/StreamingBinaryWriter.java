@@ -0,0 +1,152 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import org.eclipse.imp.pdb.facts.IList;
+import org.eclipse.imp.pdb.facts.IMap;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Writes a set, list or map one element at a time, so collections that do
+ * not fit in memory can be written straight from an iterator.
+ * 
+ * The stream starts with a header (the bytes "PDBS", a version and the
+ * {@link CollectionKind}), followed by one length-prefixed frame per
+ * element (two per map entry: key, then value) and a zero-length frame as
+ * terminator. Every frame holds one value in the PBF binary format, so
+ * memory use is bounded by the largest single element.
+ * 
+ * The header records only the kind of collection, not its type: the
+ * elements may not be known when the stream starts. A collection read back
+ * therefore has the type its elements give it: a declared
+ * <code>set[int]</code> of integers reads back as <code>set[int]</code>,
+ * but a <code>set[num]</code> of integers as <code>set[int]</code>, and an
+ * empty collection as <code>set[void]</code>, <code>list[void]</code> or
+ * <code>map[void, void]</code>. Callers that need the declared type should
+ * record it themselves.
+ * 
+ * Read such a stream back with {@link StreamingBinaryReader}.
+ */
+public class StreamingBinaryWriter implements Closeable {
+	static final byte[] MAGIC = {'P', 'D', 'B', 'S'};
+	static final int VERSION = 1;
+
+	private final OutputStream out;
+	private final CollectionKind kind;
+	private final ElementCodec codec;
+	private long count = 0;
+	private boolean finished = false;
+
+	public StreamingBinaryWriter(OutputStream out, TypeStore ts, CollectionKind kind) throws IOException {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.kind = kind;
+		this.codec = new ElementCodec(ts);
+
+		this.out.write(MAGIC);
+		this.out.write(VERSION);
+		this.out.write(kind.ordinal());
+	}
+
+	/**
+	 * Writes a whole collection; convenient for tests and small values.
+	 */
+	public static void write(IValue collection, OutputStream out, TypeStore ts) throws IOException {
+		CollectionKind kind = CollectionKind.of(collection);
+		StreamingBinaryWriter writer = new StreamingBinaryWriter(out, ts, kind);
+		switch (kind) {
+		case SET:
+			writer.writeAll(((ISet) collection).iterator());
+			break;
+		case LIST:
+			writer.writeAll(((IList) collection).iterator());
+			break;
+		case MAP:
+			IMap map = (IMap) collection;
+			for (IValue key : map) {
+				writer.put(key, map.get(key));
+			}
+			break;
+		}
+		writer.finish();
+	}
+
+	/**
+	 * Appends an element to a set or list stream.
+	 */
+	public void write(IValue element) throws IOException {
+		if (kind == CollectionKind.MAP) {
+			throw new IllegalStateException("Use put(key, value) for maps");
+		}
+		frame(element);
+		count++;
+	}
+
+	/**
+	 * Appends all elements the iterator produces, without holding on to them.
+	 */
+	public void writeAll(Iterator<? extends IValue> elements) throws IOException {
+		while (elements.hasNext()) {
+			write(elements.next());
+		}
+	}
+
+	/**
+	 * Appends an entry to a map stream.
+	 */
+	public void put(IValue key, IValue value) throws IOException {
+		if (kind != CollectionKind.MAP) {
+			throw new IllegalStateException("put(key, value) is only allowed on maps");
+		}
+		frame(key);
+		frame(value);
+		count++;
+	}
+
+	private void frame(IValue value) throws IOException {
+		if (finished) {
+			throw new IllegalStateException("Stream is already finished");
+		}
+		codec.encode(value);
+		codec.writeFramed(out);
+	}
+
+	/**
+	 * @return the number of elements (or map entries) written so far
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Writes the terminator and flushes, but leaves the stream open.
+	 */
+	public void finish() throws IOException {
+		if (!finished) {
+			VarInt.write(out, 0);
+			out.flush();
+			finished = true;
+		}
+	}
+
+	/**
+	 * Finishes the stream and closes the underlying output stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		finish();
+		out.close();
+	}
+}
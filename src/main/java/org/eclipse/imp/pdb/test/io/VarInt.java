@@ -0,0 +1,147 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Unsigned variable-length integers: seven bits per byte, least
+ * significant group first, high bit set on all but the last byte.
+ * 
+ * The ByteBuffer variants work on the buffer's position, like its relative
+ * get and put methods.
+ */
+final class VarInt {
+	/**
+	 * The longest encoding of an int.
+	 */
+	static final int MAX_LENGTH = 5;
+
+	private VarInt() {
+	}
+
+	/**
+	 * @return the number of bytes {@link #write(OutputStream, int)} writes
+	 */
+	static int size(int value) {
+		int size = 1;
+		while ((value & ~0x7f) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	static void write(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * @return the value, or -1 if the stream ended before its first byte
+	 */
+	static int read(InputStream in) throws IOException {
+		int b = in.read();
+		if (b == -1) {
+			return -1;
+		}
+		int value = b & 0x7f;
+		int shift = 7;
+		while ((b & 0x80) != 0) {
+			b = in.read();
+			if (b == -1) {
+				throw new EOFException("Truncated varint");
+			}
+			if (shift > 28) {
+				throw new IOException("Malformed varint");
+			}
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		}
+		return value;
+	}
+
+	static void writeLong(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	static long readLong(InputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.read();
+			if (b == -1) {
+				throw new EOFException("Truncated varint");
+			}
+			if (shift > 63) {
+				throw new IOException("Malformed varint");
+			}
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		return value;
+	}
+
+	static void write(ByteBuffer out, int value) {
+		while ((value & ~0x7f) != 0) {
+			out.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	/**
+	 * Writes <code>value</code> at <code>index</code> in exactly
+	 * {@link #MAX_LENGTH} bytes, padding with continuation bytes, so a
+	 * length can be reserved before it is known. {@link #read(ByteBuffer)}
+	 * and {@link #read(InputStream)} read it like any other varint.
+	 */
+	static void writePadded(ByteBuffer out, int index, int value) {
+		for (int i = 0; i < MAX_LENGTH - 1; i++) {
+			out.put(index + i, (byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.put(index + MAX_LENGTH - 1, (byte) value);
+	}
+
+	/**
+	 * @return the value, or -1 if the buffer ends before the varint does, in
+	 * which case the position is left unchanged
+	 */
+	static int read(ByteBuffer in) throws IOException {
+		int start = in.position();
+		int value = 0;
+		int shift = 0;
+		while (in.hasRemaining()) {
+			if (shift > 28) {
+				throw new IOException("Malformed varint");
+			}
+			int b = in.get();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+		in.position(start);
+		return -1;
+	}
+}
@@ -59,6 +59,19 @@ public class DataGenerator {
 		this.random.put(type,  random);
 	}
 
+	/**
+	 * @return a copy of this DataGenerator with the same static values, whose
+	 * random generators draw from streams split off this one's
+	 */
+	public DataGenerator split() {
+		DataGenerator result = new DataGenerator();
+		result.staticValues.putAll(staticValues);
+		for (Map.Entry<Class<?>, RandomGenerator<?>> e : random.entrySet()) {
+			result.random.put(e.getKey(), e.getValue().split());
+		}
+		return result;
+	}
+
 	/**
 	 * Will supply all the static values provided for the type, followed
 	 * by n random values of the type.
@@ -10,26 +10,43 @@
 *******************************************************************************/
 package org.eclipse.imp.pdb.test.random;
 
-import java.util.Random;
-
 import org.eclipse.imp.pdb.facts.IValueFactory;
 
 /**
  * Abstract interface to random generators for IValues.
  * 
+ * Every generator draws from its own {@link SplitMixRandom} stream, so
+ * generators are reproducible from the seed (see {@link RandomSeed}) and
+ * never contend on a shared Random. A generator is not thread-safe; use
+ * {@link #split()} to obtain an independent one for another thread.
+ * 
  * @author anya
  *
  */
 public abstract class RandomGenerator<T> {
-	protected final Random random = new Random();
+	protected final SplitMixRandom random;
 	protected final IValueFactory vf;
 
+	/**
+	 * Makes a generator with a stream split off the shared root stream.
+	 */
 	public RandomGenerator(IValueFactory vf) {
+		this(vf, RandomSeed.split());
+	}
+
+	public RandomGenerator(IValueFactory vf, SplitMixRandom random) {
 		this.vf = vf;
+		this.random = random;
 	}
 	
 	/**
 	 * @return the next random value for the generator
 	 */
 	public abstract T next();
+
+	/**
+	 * @return a generator of the same kind, with an independent stream
+	 * split off this generator's stream
+	 */
+	public abstract RandomGenerator<T> split();
 }
@@ -25,6 +25,10 @@ public class RandomIntegerGenerator extends RandomGenerator<IInteger> {
 	public RandomIntegerGenerator(IValueFactory vf) {
 		super(vf);
 	}
+
+	public RandomIntegerGenerator(IValueFactory vf, SplitMixRandom random) {
+		super(vf, random);
+	}
 	
 	@Override
 	public IInteger next() {
@@ -36,4 +40,9 @@ public class RandomIntegerGenerator extends RandomGenerator<IInteger> {
 		return i;
 	}
 
+	@Override
+	public RandomIntegerGenerator split() {
+		return new RandomIntegerGenerator(vf, random.split());
+	}
+
 }
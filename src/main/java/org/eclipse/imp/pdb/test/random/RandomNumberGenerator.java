@@ -27,10 +27,14 @@ public class RandomNumberGenerator extends RandomGenerator<INumber> {
 	private final RandomRationalGenerator rats;
 
 	public RandomNumberGenerator(IValueFactory vf) {
-		super(vf);
-		this.ints = new RandomIntegerGenerator(vf);
-		this.reals= new RandomRealGenerator(vf);
-		this.rats = new RandomRationalGenerator(vf);
+		this(vf, RandomSeed.split());
+	}
+
+	public RandomNumberGenerator(IValueFactory vf, SplitMixRandom random) {
+		super(vf, random);
+		this.ints = new RandomIntegerGenerator(vf, random.split());
+		this.reals= new RandomRealGenerator(vf, random.split());
+		this.rats = new RandomRationalGenerator(vf, random.split());
 	}
 	
 	@Override
@@ -44,4 +48,9 @@ public class RandomNumberGenerator extends RandomGenerator<INumber> {
 			return rats.next();
 	}
 
+	@Override
+	public RandomNumberGenerator split() {
+		return new RandomNumberGenerator(vf, random.split());
+	}
+
 }
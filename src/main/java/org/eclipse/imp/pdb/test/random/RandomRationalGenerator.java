@@ -17,7 +17,9 @@ import org.eclipse.imp.pdb.facts.IValueFactory;
 /**
  * Random IRational generator.
  * 
- * Generates numerators/denominators based on the RandomIntegerGenerator.
+ * Generates numerators/denominators based on the RandomIntegerGenerator,
+ * or, for one in three, small ones with common factors, so that sums and
+ * products of those stay small and need normalizing.
  * @author anya
  *
  */
@@ -26,12 +28,21 @@ public class RandomRationalGenerator extends RandomGenerator<IRational> {
 	private final RandomIntegerGenerator intGen;
 
 	public RandomRationalGenerator(IValueFactory vf) {
-		super(vf);
-		intGen = new RandomIntegerGenerator(vf);
+		this(vf, RandomSeed.split());
+	}
+
+	public RandomRationalGenerator(IValueFactory vf, SplitMixRandom random) {
+		super(vf, random);
+		intGen = new RandomIntegerGenerator(vf, random.split());
 	}
 	
 	@Override
 	public IRational next() {
+		if(random.nextInt(3) == 0) {
+			int factor = random.nextInt(12) + 1;
+			int d = (random.nextInt(1000) + 1) * factor;
+			return vf.rational((random.nextInt(2001) - 1000) * factor, random.nextBoolean() ? d : -d);
+		}
 		IInteger a = intGen.next();
 		IInteger b = intGen.next();
 		if(b.isEqual(vf.integer(0)))
@@ -39,4 +50,9 @@ public class RandomRationalGenerator extends RandomGenerator<IRational> {
 		return vf.rational(a, b);
 	}
 
+	@Override
+	public RandomRationalGenerator split() {
+		return new RandomRationalGenerator(vf, random.split());
+	}
+
 }
@@ -25,6 +25,10 @@ public class RandomRealGenerator extends RandomGenerator<IReal> {
 	public RandomRealGenerator(IValueFactory vf) {
 		super(vf);
 	}
+
+	public RandomRealGenerator(IValueFactory vf, SplitMixRandom random) {
+		super(vf, random);
+	}
 	
 	@Override
 	public IReal next() {
@@ -39,4 +43,9 @@ public class RandomRealGenerator extends RandomGenerator<IReal> {
 		return r;
 	}
 
+	@Override
+	public RandomRealGenerator split() {
+		return new RandomRealGenerator(vf, random.split());
+	}
+
 }
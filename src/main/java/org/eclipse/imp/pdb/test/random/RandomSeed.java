@@ -0,0 +1,67 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.random;
+
+/**
+ * The seed from which all random test data is derived.
+ * 
+ * The seed is read from the <code>pdb.test.seed</code> system property, or
+ * chosen at random when it is not set. Either way it is fixed for the whole
+ * run, so printing {@link #describe()} on failure is enough to reproduce it.
+ */
+public final class RandomSeed {
+	public static final String PROPERTY = "pdb.test.seed";
+
+	private static final long SEED = initialSeed();
+	private static final SplitMixRandom ROOT = new SplitMixRandom(SEED);
+
+	private RandomSeed() {
+	}
+
+	private static long initialSeed() {
+		String property = System.getProperty(PROPERTY);
+		if (property != null) {
+			try {
+				return Long.parseLong(property.trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(PROPERTY + " should be a long, not " + property, e);
+			}
+		}
+		return System.nanoTime() ^ System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the seed of this run
+	 */
+	public static long get() {
+		return SEED;
+	}
+
+	/**
+	 * @return a fresh root stream for the seed of this run; callers that
+	 * create their own root get the same values regardless of test order
+	 */
+	public static SplitMixRandom root() {
+		return new SplitMixRandom(SEED);
+	}
+
+	/**
+	 * @return a new stream split off the shared root, for generators that
+	 * were not given a stream explicitly
+	 */
+	public static synchronized SplitMixRandom split() {
+		return ROOT.split();
+	}
+
+	/**
+	 * @return how to reproduce this run
+	 */
+	public static String describe() {
+		return "random seed " + SEED + " (rerun with -D" + PROPERTY + "=" + SEED + ")";
+	}
+}
@@ -15,7 +15,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 
-import org.eclipse.imp.pdb.facts.IValueFactory;
 import org.eclipse.imp.pdb.facts.type.Type;
 import org.eclipse.imp.pdb.facts.type.TypeFactory;
 
@@ -25,6 +24,10 @@ public class RandomTypeGenerator {
 	private final Random random;
 
 	public RandomTypeGenerator() {
+		this(RandomSeed.split());
+	}
+
+	public RandomTypeGenerator(Random random) {
 		atomicTypes = new LinkedList<Type>();
 		atomicTypes.add(tf.realType());
 		atomicTypes.add(tf.integerType());
@@ -35,7 +38,7 @@ public class RandomTypeGenerator {
 		atomicTypes.add(tf.nodeType());
 		atomicTypes.add(tf.boolType());
 		atomicTypes.add(tf.dateTimeType());
-		this.random = new Random();
+		this.random = random;
 	}
 	
   public Type next(int maxDepth) {
@@ -0,0 +1,307 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.random;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.IMapWriter;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * Random IValue generator for any type, including abstract data types and
+ * constructors declared in a TypeStore.
+ *
+ * The shape of the values is controlled by a maximum nesting depth and a
+ * maximum width, which bounds the size of collections, the arity of untyped
+ * nodes and the length of strings. Below the maximum depth collections are
+ * empty and abstract data types prefer their constructors of the lowest arity,
+ * so generation terminates for every type that has a finite value.
+ *
+ * Combine with {@link RandomTypeGenerator} to get values of random types.
+ */
+public class RandomValueGenerator extends RandomGenerator<IValue> {
+
+	/**
+	 * How collection sizes and string lengths are drawn from 0 .. maxWidth.
+	 */
+	public enum SizeDistribution {
+		/** every size equally likely */
+		UNIFORM,
+		/** mostly small, occasionally up to maxWidth (mean maxWidth / 4) */
+		GEOMETRIC,
+		/** always maxWidth */
+		FIXED
+	}
+
+	private static final int UNBOUNDED_RECURSION = 64;
+
+	private final TypeStore ts;
+	private final Type type;
+	private final RandomIntegerGenerator ints;
+	private final RandomRealGenerator reals;
+	private final RandomRationalGenerator rats;
+	private final RandomNumberGenerator numbers;
+	private final RandomTypeGenerator types;
+	private final Map<Type, Type[]> alternatives = new HashMap<>();
+
+	private int maxDepth = 5;
+	private int maxWidth = 10;
+	private SizeDistribution sizes = SizeDistribution.GEOMETRIC;
+
+	public RandomValueGenerator(IValueFactory vf, TypeStore ts, Type type) {
+		this(vf, ts, type, RandomSeed.split());
+	}
+
+	public RandomValueGenerator(IValueFactory vf, TypeStore ts, Type type, SplitMixRandom random) {
+		super(vf, random);
+		this.ts = ts;
+		this.type = type;
+		this.ints = new RandomIntegerGenerator(vf, random.split());
+		this.reals = new RandomRealGenerator(vf, random.split());
+		this.rats = new RandomRationalGenerator(vf, random.split());
+		this.numbers = new RandomNumberGenerator(vf, random.split());
+		this.types = new RandomTypeGenerator(random.split());
+	}
+
+	public RandomValueGenerator setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+	public RandomValueGenerator setMaxWidth(int maxWidth) {
+		this.maxWidth = maxWidth;
+		return this;
+	}
+
+	public RandomValueGenerator setSizeDistribution(SizeDistribution sizes) {
+		this.sizes = sizes;
+		return this;
+	}
+
+	/**
+	 * @return a random value of the type this generator was made for
+	 */
+	@Override
+	public IValue next() {
+		return generate(type);
+	}
+
+	/**
+	 * @return a random value of type <code>t</code>
+	 */
+	public IValue generate(Type t) {
+		return generate(t, maxDepth);
+	}
+
+	@Override
+	public RandomValueGenerator split() {
+		return new RandomValueGenerator(vf, ts, type, random.split())
+			.setMaxDepth(maxDepth)
+			.setMaxWidth(maxWidth)
+			.setSizeDistribution(sizes);
+	}
+
+	private IValue generate(Type t, int depth) {
+		if (depth < -UNBOUNDED_RECURSION) {
+			throw new IllegalArgumentException("Type has no finite values within the depth bound: " + t);
+		}
+		if (t.isAliased()) {
+			return generate(t.getAliased(), depth);
+		}
+		if (t.isParameter()) {
+			return generate(t.getBound(), depth);
+		}
+		if (t.isBottom()) {
+			throw new IllegalArgumentException("There are no values of type " + t);
+		}
+		if (t.isTop()) {
+			return generate(types.next(Math.max(depth, 0)), depth);
+		}
+		if (t.isBool()) {
+			return vf.bool(random.nextBoolean());
+		}
+		if (t.isInteger()) {
+			// mostly small integers, which are the common case in practice
+			return random.nextInt(4) == 0 ? ints.next() : vf.integer(random.nextInt(2001) - 1000);
+		}
+		if (t.isReal()) {
+			return reals.next();
+		}
+		if (t.isRational()) {
+			return rats.next();
+		}
+		if (t.isNumber()) {
+			return numbers.next();
+		}
+		if (t.isString()) {
+			return vf.string(string(size(depth + 1)));
+		}
+		if (t.isSourceLocation()) {
+			return sourceLocation();
+		}
+		if (t.isDateTime()) {
+			// somewhere between 1970 and 2100
+			return vf.datetime((long) (random.nextDouble() * 4102444800000L));
+		}
+		if (t.isConstructor()) {
+			return constructor(t, depth);
+		}
+		if (t.isAbstractData()) {
+			return constructor(alternative(t, depth), depth);
+		}
+		if (t.isNode()) {
+			return node(depth);
+		}
+		if (t.isTuple()) {
+			IValue[] fields = new IValue[t.getArity()];
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = generate(t.getFieldType(i), depth - 1);
+			}
+			return vf.tuple(fields);
+		}
+		if (t.isList()) {
+			IListWriter w = vf.listWriter(t.getElementType());
+			for (int n = size(depth); n > 0; n--) {
+				w.append(generate(t.getElementType(), depth - 1));
+			}
+			return w.done();
+		}
+		if (t.isSet()) {
+			ISetWriter w = vf.setWriter(t.getElementType());
+			for (int n = size(depth); n > 0; n--) {
+				w.insert(generate(t.getElementType(), depth - 1));
+			}
+			return w.done();
+		}
+		if (t.isMap()) {
+			IMapWriter w = vf.mapWriter(t.getKeyType(), t.getValueType());
+			for (int n = size(depth); n > 0; n--) {
+				w.put(generate(t.getKeyType(), depth - 1), generate(t.getValueType(), depth - 1));
+			}
+			return w.done();
+		}
+		throw new UnsupportedOperationException("Can not generate values of type " + t);
+	}
+
+	private IValue constructor(Type cons, int depth) {
+		IValue[] children = new IValue[cons.getArity()];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = generate(cons.getFieldType(i), depth - 1);
+		}
+		return vf.constructor(cons, children);
+	}
+
+	private IValue node(int depth) {
+		IValue[] children = new IValue[size(depth)];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = generate(types.next(Math.max(depth - 1, 0)), depth - 1);
+		}
+		return vf.node(identifier(), children);
+	}
+
+	/**
+	 * Picks a constructor of <code>adt</code>; once the depth is used up,
+	 * one of the constructors with the fewest children.
+	 */
+	private Type alternative(Type adt, int depth) {
+		Type[] alts = alternatives.get(adt);
+		if (alts == null) {
+			Set<Type> declared = ts.lookupAlternatives(adt);
+			if (declared.isEmpty()) {
+				throw new IllegalArgumentException("No constructors declared for " + adt);
+			}
+			alts = declared.toArray(new Type[declared.size()]);
+			Arrays.sort(alts, new Comparator<Type>() {
+				@Override
+				public int compare(Type a, Type b) {
+					return Integer.compare(a.getArity(), b.getArity());
+				}
+			});
+			alternatives.put(adt, alts);
+		}
+		if (depth > 0) {
+			return alts[random.nextInt(alts.length)];
+		}
+		int smallest = 1;
+		while (smallest < alts.length && alts[smallest].getArity() == alts[0].getArity()) {
+			smallest++;
+		}
+		return alts[random.nextInt(smallest)];
+	}
+
+	private IValue sourceLocation() {
+		URI uri = URI.create("file:///random/" + identifier() + ".txt");
+		if (random.nextBoolean()) {
+			return vf.sourceLocation(uri);
+		}
+		int beginLine = random.nextInt(1000) + 1;
+		int endLine = beginLine + random.nextInt(10);
+		int beginColumn = random.nextInt(80);
+		int endColumn = random.nextInt(80);
+		return vf.sourceLocation(uri, random.nextInt(100000), random.nextInt(1000), beginLine, endLine, beginColumn, endColumn);
+	}
+
+	private String identifier() {
+		StringBuilder b = new StringBuilder();
+		b.append((char) ('a' + random.nextInt(26)));
+		for (int n = random.nextInt(8); n > 0; n--) {
+			b.append((char) ('a' + random.nextInt(26)));
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Mostly ASCII, with some other BMP characters and some supplementary
+	 * code points, which take two chars in Java.
+	 */
+	private String string(int codePoints) {
+		StringBuilder b = new StringBuilder(codePoints);
+		for (int i = 0; i < codePoints; i++) {
+			int kind = random.nextInt(10);
+			if (kind < 7) {
+				b.append((char) (' ' + random.nextInt(95)));
+			}
+			else if (kind < 9) {
+				b.appendCodePoint(0xA0 + random.nextInt(0xD800 - 0xA0));
+			}
+			else {
+				b.appendCodePoint(0x10000 + random.nextInt(0x10000));
+			}
+		}
+		return b.toString();
+	}
+
+	private int size(int depth) {
+		if (depth <= 0 || maxWidth <= 0) {
+			return 0;
+		}
+		switch (sizes) {
+		case UNIFORM:
+			return random.nextInt(maxWidth + 1);
+		case FIXED:
+			return maxWidth;
+		default:
+			int n = 0;
+			double p = 4.0 / (maxWidth + 4);
+			while (n < maxWidth && random.nextDouble() >= p) {
+				n++;
+			}
+			return n;
+		}
+	}
+}
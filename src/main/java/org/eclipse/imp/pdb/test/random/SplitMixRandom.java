@@ -0,0 +1,91 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.random;
+
+import java.util.Random;
+
+/**
+ * A splittable, seedable random number generator (the SplitMix64 algorithm).
+ * 
+ * Extends java.util.Random so it can be used wherever the generators used
+ * Random before, but it is <em>not</em> thread-safe and does no locking:
+ * instead, every thread or task should take its own stream with
+ * {@link #split()}. Splitting is deterministic, so a given seed and a given
+ * sequence of splits always produce the same values.
+ */
+public class SplitMixRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long seed;
+	private final long gamma;
+
+	public SplitMixRandom(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	private SplitMixRandom(long seed, long gamma) {
+		super(0L);
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * @return a new generator, statistically independent from this one,
+	 * whose values are fully determined by the state of this generator
+	 */
+	public SplitMixRandom split() {
+		return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+	}
+
+	/**
+	 * Restarts this stream at <code>seed</code>; with the default gamma it
+	 * then produces the same values as <code>new SplitMixRandom(seed)</code>.
+	 * The Random constructor calls this before the fields of this class are
+	 * initialized, which is harmless as the constructor sets the seed after.
+	 */
+	@Override
+	public void setSeed(long seed) {
+		// also discards a pending nextGaussian value
+		super.setSeed(seed);
+		this.seed = seed;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return mix32(nextSeed()) >>> (32 - bits);
+	}
+
+	@Override
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+
+	private long nextSeed() {
+		return seed += gamma;
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.relational;
+
+import org.eclipse.imp.pdb.facts.IList;
+import org.eclipse.imp.pdb.facts.IListWriter;
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.ITuple;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+import org.eclipse.imp.pdb.facts.exceptions.IllegalOperationException;
+import org.eclipse.imp.pdb.facts.type.Type;
+
+/**
+ * Relation composition as a hash join.
+ * 
+ * The right-hand operand is indexed on its first column (see
+ * {@link JoinIndex}), after which every left tuple costs one lookup on its
+ * last column, instead of a scan of the whole right operand. The result has
+ * the same tuples as <code>asRelation().compose(...)</code>: the last field
+ * of the left and the first field of the right tuple are dropped.
+ */
+public final class HashJoinCompose {
+
+	private HashJoinCompose() {
+	}
+
+	public static ISet compose(IValueFactory vf, ISet left, ISet right) {
+		return compose(vf, left, JoinIndex.build(right, right.asRelation().arity()));
+	}
+
+	public static ISet compose(IValueFactory vf, ISet left, JoinIndex right) {
+		int leftArity = left.asRelation().arity();
+		ISetWriter w = vf.setWriter();
+
+		for (IValue v : left) {
+			ITuple l = (ITuple) v;
+			for (ITuple r : right.lookup(l.get(leftArity - 1))) {
+				w.insert(join(vf, l, leftArity, r, right.arity()));
+			}
+		}
+
+		return w.done();
+	}
+
+	public static IList compose(IValueFactory vf, IList left, IList right) {
+		Type leftType = left.getType();
+		Type rightType = right.getType();
+		if (!leftType.getFieldType(leftType.getArity() - 1).comparable(rightType.getFieldType(0))) {
+			throw new IllegalOperationException("compose", leftType, rightType);
+		}
+		return compose(vf, left, JoinIndex.build(right, right.asRelation().arity()));
+	}
+
+	/**
+	 * List relations keep the order of the left operand, and for each left
+	 * tuple the order of the matching right tuples, as a nested loop would.
+	 */
+	public static IList compose(IValueFactory vf, IList left, JoinIndex right) {
+		int leftArity = left.asRelation().arity();
+		IListWriter w = vf.listWriter();
+
+		for (IValue v : left) {
+			ITuple l = (ITuple) v;
+			for (ITuple r : right.lookup(l.get(leftArity - 1))) {
+				w.append(join(vf, l, leftArity, r, right.arity()));
+			}
+		}
+
+		return w.done();
+	}
+
+	private static ITuple join(IValueFactory vf, ITuple l, int leftArity, ITuple r, int rightArity) {
+		if (leftArity == 2 && rightArity == 2) {
+			return vf.tuple(l.get(0), r.get(1));
+		}
+
+		IValue[] fields = new IValue[leftArity + rightArity - 2];
+		for (int i = 0; i < leftArity - 1; i++) {
+			fields[i] = l.get(i);
+		}
+		for (int i = 1; i < rightArity; i++) {
+			fields[leftArity - 2 + i] = r.get(i);
+		}
+		return vf.tuple(fields);
+	}
+}
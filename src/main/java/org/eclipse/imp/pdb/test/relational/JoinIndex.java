@@ -0,0 +1,80 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.relational;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.imp.pdb.facts.ITuple;
+import org.eclipse.imp.pdb.facts.IValue;
+
+/**
+ * Hash index of a relation (set or list of tuples) on its first column.
+ * 
+ * An index is immutable once built, so it can be kept as a handle and
+ * reused for any number of compositions with the same right-hand operand.
+ * Tuples sharing a key keep the iteration order of the indexed relation.
+ */
+public final class JoinIndex {
+	private static final ITuple[] NONE = new ITuple[0];
+
+	private final Map<IValue, ITuple[]> buckets;
+	private final int arity;
+
+	private JoinIndex(Map<IValue, ITuple[]> buckets, int arity) {
+		this.buckets = buckets;
+		this.arity = arity;
+	}
+
+	/**
+	 * Indexes the given relation on its first column.
+	 */
+	public static JoinIndex build(Iterable<IValue> relation, int arity) {
+		Map<IValue, List<ITuple>> lists = new HashMap<>();
+		for (IValue v : relation) {
+			ITuple t = (ITuple) v;
+			List<ITuple> bucket = lists.get(t.get(0));
+			if (bucket == null) {
+				bucket = new ArrayList<>(2);
+				lists.put(t.get(0), bucket);
+			}
+			bucket.add(t);
+		}
+
+		Map<IValue, ITuple[]> buckets = new HashMap<>(lists.size() * 2);
+		for (Map.Entry<IValue, List<ITuple>> e : lists.entrySet()) {
+			List<ITuple> bucket = e.getValue();
+			buckets.put(e.getKey(), bucket.toArray(new ITuple[bucket.size()]));
+		}
+		return new JoinIndex(buckets, arity);
+	}
+
+	/**
+	 * @return the tuples whose first field equals <code>key</code>, never null
+	 */
+	public ITuple[] lookup(IValue key) {
+		ITuple[] bucket = buckets.get(key);
+		return bucket == null ? NONE : bucket;
+	}
+
+	/**
+	 * @return the arity of the indexed relation
+	 */
+	public int arity() {
+		return arity;
+	}
+
+	/**
+	 * @return the number of distinct keys
+	 */
+	public int size() {
+		return buckets.size();
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.relational;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.imp.pdb.facts.ISet;
+import org.eclipse.imp.pdb.facts.ISetWriter;
+import org.eclipse.imp.pdb.facts.ITuple;
+import org.eclipse.imp.pdb.facts.IValue;
+import org.eclipse.imp.pdb.facts.IValueFactory;
+
+/**
+ * Transitive closure of binary set relations by semi-naive iteration.
+ * 
+ * The relation is indexed once on its first column. Each source node then
+ * only joins the tuples it discovered in the previous round (the delta)
+ * against that index, instead of re-joining the whole closure computed so
+ * far. Since the rows of different source nodes never interact, the sources
+ * are partitioned over a fork/join pool and the rows are merged at the end.
+ * 
+ * The result is the same ISet as <code>relation.asRelation().closure()</code>.
+ */
+public final class SemiNaiveClosure {
+	/**
+	 * Number of source nodes below which a task is not split any further.
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 256;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	private SemiNaiveClosure() {
+	}
+
+	/**
+	 * Computes the closure using all available processors.
+	 */
+	public static ISet closure(IValueFactory vf, ISet relation) {
+		return closure(vf, relation, POOL);
+	}
+
+	/**
+	 * Computes the closure on the given pool; a pool with parallelism 1
+	 * gives the sequential semi-naive algorithm.
+	 */
+	public static ISet closure(IValueFactory vf, ISet relation, ForkJoinPool pool) {
+		if (relation.asRelation().arity() != 2) {
+			throw new IllegalArgumentException("closure is only defined on binary relations: " + relation.getType());
+		}
+
+		Map<IValue, IValue[]> index = index(relation);
+		IValue[] sources = index.keySet().toArray(new IValue[index.size()]);
+		List<List<ITuple>> rows = pool.invoke(new RowsTask(vf, index, sources, 0, sources.length));
+
+		ISetWriter w = vf.setWriter(relation.getElementType());
+		for (List<ITuple> row : rows) {
+			for (ITuple t : row) {
+				w.insert(t);
+			}
+		}
+		return w.done();
+	}
+
+	/**
+	 * Hash index of the relation on its first column.
+	 */
+	static Map<IValue, IValue[]> index(ISet relation) {
+		Map<IValue, List<IValue>> lists = new HashMap<>();
+		for (IValue v : relation) {
+			ITuple t = (ITuple) v;
+			List<IValue> successors = lists.get(t.get(0));
+			if (successors == null) {
+				successors = new ArrayList<>(2);
+				lists.put(t.get(0), successors);
+			}
+			successors.add(t.get(1));
+		}
+
+		Map<IValue, IValue[]> index = new HashMap<>(lists.size() * 2);
+		for (Map.Entry<IValue, List<IValue>> e : lists.entrySet()) {
+			List<IValue> successors = e.getValue();
+			index.put(e.getKey(), successors.toArray(new IValue[successors.size()]));
+		}
+		return index;
+	}
+
+	/**
+	 * Computes the closure row of a single source node: every node reachable
+	 * in one or more steps. Only the delta of the previous round is joined.
+	 */
+	static Set<IValue> row(Map<IValue, IValue[]> index, IValue source) {
+		Set<IValue> reached = new HashSet<>();
+		List<IValue> delta = new ArrayList<>();
+
+		for (IValue next : index.get(source)) {
+			if (reached.add(next)) {
+				delta.add(next);
+			}
+		}
+
+		while (!delta.isEmpty()) {
+			List<IValue> newDelta = new ArrayList<>();
+			for (IValue mid : delta) {
+				IValue[] successors = index.get(mid);
+				if (successors == null) {
+					continue;
+				}
+				for (IValue next : successors) {
+					if (reached.add(next)) {
+						newDelta.add(next);
+					}
+				}
+			}
+			delta = newDelta;
+		}
+
+		return reached;
+	}
+
+	private static class RowsTask extends RecursiveTask<List<List<ITuple>>> {
+		private static final long serialVersionUID = 1L;
+
+		private final IValueFactory vf;
+		private final Map<IValue, IValue[]> index;
+		private final IValue[] sources;
+		private final int from;
+		private final int to;
+
+		RowsTask(IValueFactory vf, Map<IValue, IValue[]> index, IValue[] sources, int from, int to) {
+			this.vf = vf;
+			this.index = index;
+			this.sources = sources;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<List<ITuple>> compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				List<ITuple> tuples = new ArrayList<>();
+				for (int i = from; i < to; i++) {
+					IValue source = sources[i];
+					for (IValue target : row(index, source)) {
+						tuples.add(vf.tuple(source, target));
+					}
+				}
+				List<List<ITuple>> result = new ArrayList<>(1);
+				result.add(tuples);
+				return result;
+			}
+
+			int mid = (from + to) >>> 1;
+			RowsTask left = new RowsTask(vf, index, sources, from, mid);
+			RowsTask right = new RowsTask(vf, index, sources, mid, to);
+			left.fork();
+			List<List<ITuple>> result = right.compute();
+			result.addAll(left.join());
+			return result;
+		}
+	}
+}
@@ -0,0 +1,409 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.imp.pdb.facts.exceptions.FactTypeDeclarationException;
+import org.eclipse.imp.pdb.facts.exceptions.FactTypeUseException;
+import org.eclipse.imp.pdb.facts.type.Type;
+import org.eclipse.imp.pdb.facts.type.TypeStore;
+
+/**
+ * A TypeStore that can be declared into and read from many threads at once.
+ *
+ * Declarations (made directly or through the TypeFactory, which declares
+ * into the store it is given) are serialized by a write lock, as they all
+ * update the same tables of the underlying store. Lookups run concurrently
+ * under the read lock, and their answers are memoized in concurrent maps, so
+ * repeated lookups of the same name or type do not lock at all.
+ *
+ * Every declaration that changes the store starts a fresh set of memo
+ * tables, which is what keeps them correct: a lookup stores its answer only
+ * in the tables that were current when it started, and a lookup can only
+ * start on a new set of tables after the declaration that made them has
+ * completed. Repeating a declaration the store already has (as readers do
+ * for every constructor they decode) keeps the tables.
+ *
+ * Every public method of TypeStore is overridden here: declarations,
+ * imports and extensions take the write lock, and lookups and the getters
+ * take the read lock. The getters return copies made under the lock.
+ * Stores that this one imports or extends are not guarded; they should not
+ * change while it is in use.
+ */
+public class ConcurrentTypeStore extends TypeStore {
+	private static final Object NONE = new Object();
+
+	private final Lock read;
+	private final Lock write;
+	private volatile Memo memo = new Memo();
+
+	public ConcurrentTypeStore() {
+		super();
+		ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		this.read = lock.readLock();
+		this.write = lock.writeLock();
+	}
+
+	@Override
+	public void declareAbstractDataType(Type adt) throws FactTypeDeclarationException {
+		if (adt.equals(lookupAbstractDataType(adt.getName()))) {
+			return;
+		}
+		write.lock();
+		try {
+			super.declareAbstractDataType(adt);
+		}
+		finally {
+			memo = new Memo();
+			write.unlock();
+		}
+	}
+
+	@Override
+	public void declareConstructor(Type constructor) throws FactTypeDeclarationException {
+		if (isDeclared(constructor)) {
+			return;
+		}
+		write.lock();
+		try {
+			super.declareConstructor(constructor);
+		}
+		finally {
+			memo = new Memo();
+			write.unlock();
+		}
+	}
+
+	private boolean isDeclared(Type constructor) {
+		try {
+			return constructor.equals(lookupConstructor(constructor.getAbstractDataType(), constructor.getName(), constructor.getFieldTypes()));
+		}
+		catch (FactTypeUseException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void declareAlias(Type alias) throws FactTypeDeclarationException {
+		if (alias.equals(lookupAlias(alias.getName()))) {
+			return;
+		}
+		write.lock();
+		try {
+			super.declareAlias(alias);
+		}
+		finally {
+			memo = new Memo();
+			write.unlock();
+		}
+	}
+
+	@Override
+	public void declareAnnotation(Type onType, String key, Type valueType) throws FactTypeDeclarationException {
+		if (valueType.equals(getAnnotationType(onType, key))) {
+			return;
+		}
+		write.lock();
+		try {
+			super.declareAnnotation(onType, key, valueType);
+		}
+		finally {
+			memo = new Memo();
+			write.unlock();
+		}
+	}
+
+	@Override
+	public void extendStore(TypeStore other) {
+		write.lock();
+		try {
+			super.extendStore(other);
+		}
+		finally {
+			memo = new Memo();
+			write.unlock();
+		}
+	}
+
+	@Override
+	public void importStore(TypeStore... stores) {
+		write.lock();
+		try {
+			super.importStore(stores);
+		}
+		finally {
+			memo = new Memo();
+			write.unlock();
+		}
+	}
+
+	@Override
+	public void unimportStores(TypeStore... stores) {
+		write.lock();
+		try {
+			super.unimportStores(stores);
+		}
+		finally {
+			memo = new Memo();
+			write.unlock();
+		}
+	}
+
+	@Override
+	public Collection<TypeStore> getImports() {
+		read.lock();
+		try {
+			return Collections.unmodifiableList(new ArrayList<>(super.getImports()));
+		}
+		finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Collection<Type> getAbstractDataTypes() {
+		read.lock();
+		try {
+			return copy(super.getAbstractDataTypes());
+		}
+		finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Collection<Type> getAliases() {
+		read.lock();
+		try {
+			return copy(super.getAliases());
+		}
+		finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Collection<Type> getConstructors() {
+		read.lock();
+		try {
+			return copy(super.getConstructors());
+		}
+		finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Type lookupFirstConstructor(String cons, Type args) {
+		read.lock();
+		try {
+			return super.lookupFirstConstructor(cons, args);
+		}
+		finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Type lookupAbstractDataType(String name) {
+		Memo m = memo;
+		Object cached = m.abstractDataTypes.get(name);
+		if (cached == null) {
+			read.lock();
+			try {
+				cached = orNone(super.lookupAbstractDataType(name));
+			}
+			finally {
+				read.unlock();
+			}
+			m.abstractDataTypes.put(name, cached);
+		}
+		return (Type) orNull(cached);
+	}
+
+	@Override
+	public Type lookupAlias(String name) {
+		Memo m = memo;
+		Object cached = m.aliases.get(name);
+		if (cached == null) {
+			read.lock();
+			try {
+				cached = orNone(super.lookupAlias(name));
+			}
+			finally {
+				read.unlock();
+			}
+			m.aliases.put(name, cached);
+		}
+		return (Type) orNull(cached);
+	}
+
+	@Override
+	public Set<Type> lookupAlternatives(Type adt) {
+		Memo m = memo;
+		Set<Type> cached = m.alternatives.get(adt);
+		if (cached == null) {
+			read.lock();
+			try {
+				cached = immutable(super.lookupAlternatives(adt));
+			}
+			finally {
+				read.unlock();
+			}
+			m.alternatives.put(adt, cached);
+		}
+		return cached;
+	}
+
+	@Override
+	public Type lookupConstructor(Type adt, String cons, Type args) throws FactTypeUseException {
+		Key key = new Key(adt, cons, args);
+		Memo m = memo;
+		Object cached = m.constructor.get(key);
+		if (cached == null) {
+			read.lock();
+			try {
+				cached = orNone(super.lookupConstructor(adt, cons, args));
+			}
+			finally {
+				read.unlock();
+			}
+			m.constructor.put(key, cached);
+		}
+		return (Type) orNull(cached);
+	}
+
+	@Override
+	public Set<Type> lookupConstructor(Type adt, String constructorName) throws FactTypeUseException {
+		Key key = new Key(adt, constructorName);
+		Memo m = memo;
+		Set<Type> cached = m.constructors.get(key);
+		if (cached == null) {
+			read.lock();
+			try {
+				cached = immutable(super.lookupConstructor(adt, constructorName));
+			}
+			finally {
+				read.unlock();
+			}
+			m.constructors.put(key, cached);
+		}
+		return cached;
+	}
+
+	@Override
+	public Set<Type> lookupConstructors(String constructorName) {
+		Key key = new Key(constructorName);
+		Memo m = memo;
+		Set<Type> cached = m.constructors.get(key);
+		if (cached == null) {
+			read.lock();
+			try {
+				cached = immutable(super.lookupConstructors(constructorName));
+			}
+			finally {
+				read.unlock();
+			}
+			m.constructors.put(key, cached);
+		}
+		return cached;
+	}
+
+	@Override
+	public Map<String, Type> getAnnotations(Type onType) {
+		Memo m = memo;
+		Map<String, Type> cached = m.annotations.get(onType);
+		if (cached == null) {
+			read.lock();
+			try {
+				Map<String, Type> declared = super.getAnnotations(onType);
+				cached = declared == null ? Collections.<String, Type>emptyMap() : Collections.unmodifiableMap(new HashMap<>(declared));
+			}
+			finally {
+				read.unlock();
+			}
+			m.annotations.put(onType, cached);
+		}
+		return cached;
+	}
+
+	@Override
+	public Type getAnnotationType(Type onType, String key) {
+		Key k = new Key(onType, key);
+		Memo m = memo;
+		Object cached = m.annotationTypes.get(k);
+		if (cached == null) {
+			read.lock();
+			try {
+				cached = orNone(super.getAnnotationType(onType, key));
+			}
+			finally {
+				read.unlock();
+			}
+			m.annotationTypes.put(k, cached);
+		}
+		return (Type) orNull(cached);
+	}
+
+	private static Object orNone(Object o) {
+		return o == null ? NONE : o;
+	}
+
+	private static Object orNull(Object o) {
+		return o == NONE ? null : o;
+	}
+
+	private static Collection<Type> copy(Collection<Type> types) {
+		return Collections.unmodifiableList(new ArrayList<>(types));
+	}
+
+	private static Set<Type> immutable(Set<Type> set) {
+		return set == null ? Collections.<Type>emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(set));
+	}
+
+	private static final class Memo {
+		final Map<String, Object> abstractDataTypes = new ConcurrentHashMap<>();
+		final Map<String, Object> aliases = new ConcurrentHashMap<>();
+		final Map<Type, Set<Type>> alternatives = new ConcurrentHashMap<>();
+		final Map<Key, Object> constructor = new ConcurrentHashMap<>();
+		final Map<Key, Set<Type>> constructors = new ConcurrentHashMap<>();
+		final Map<Type, Map<String, Type>> annotations = new ConcurrentHashMap<>();
+		final Map<Key, Object> annotationTypes = new ConcurrentHashMap<>();
+	}
+
+	private static final class Key {
+		private final Object[] parts;
+		private final int hash;
+
+		Key(Object... parts) {
+			this.parts = parts;
+			this.hash = Arrays.hashCode(parts);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(parts, ((Key) o).parts);
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+* Copyright (c) 2013 Centrum Wiskunde en Informatica (CWI)
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*******************************************************************************/
+package org.eclipse.imp.pdb.test.type;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.imp.pdb.facts.type.Type;
+
+/**
+ * Memoizes isSubtypeOf, lub and glb on pairs of types.
+ *
+ * Types are immutable and hash-consed by the TypeFactory, so a pair of types
+ * is identified by the identity of its members and the answer never changes.
+ * The cache is a fixed-size, direct-mapped table: every pair hashes to one
+ * slot, and a new pair simply replaces whatever was there. Reads and writes
+ * are lock-free; two threads computing the same pair at the same time both
+ * compute it, and one of the equal answers is kept.
+ *
+ * The hit and miss counters are shared atomics; pass <code>false</code> for
+ * <code>countHits</code> when the cache is hammered from many threads.
+ */
+public class TypeLatticeCache {
+	private static final int SUBTYPE = 0;
+	private static final int LUB = 1;
+	private static final int GLB = 2;
+
+	private final AtomicReferenceArray<Entry> table;
+	private final int mask;
+	private final boolean countHits;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param capacity number of slots, rounded up to a power of two
+	 */
+	public TypeLatticeCache(int capacity) {
+		this(capacity, true);
+	}
+
+	public TypeLatticeCache(int capacity, boolean countHits) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity should be positive: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.table = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.countHits = countHits;
+	}
+
+	/**
+	 * @return <code>a.isSubtypeOf(b)</code>
+	 */
+	public boolean isSubtypeOf(Type a, Type b) {
+		Object cached = lookup(SUBTYPE, a, b);
+		if (cached != null) {
+			return (Boolean) cached;
+		}
+		boolean result = a.isSubtypeOf(b);
+		store(SUBTYPE, a, b, result);
+		return result;
+	}
+
+	/**
+	 * @return <code>a.lub(b)</code>
+	 */
+	public Type lub(Type a, Type b) {
+		Object cached = lookup(LUB, a, b);
+		if (cached != null) {
+			return (Type) cached;
+		}
+		Type result = a.lub(b);
+		store(LUB, a, b, result);
+		return result;
+	}
+
+	/**
+	 * @return <code>a.glb(b)</code>
+	 */
+	public Type glb(Type a, Type b) {
+		Object cached = lookup(GLB, a, b);
+		if (cached != null) {
+			return (Type) cached;
+		}
+		Type result = a.glb(b);
+		store(GLB, a, b, result);
+		return result;
+	}
+
+	public int capacity() {
+		return table.length();
+	}
+
+	public long hits() {
+		return hits.get();
+	}
+
+	public long misses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the fraction of lookups answered from the cache, or 0 if there
+	 * were none
+	 */
+	public double hitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0.0 : (double) h / total;
+	}
+
+	/**
+	 * Empties the cache and resets the counters.
+	 */
+	public void clear() {
+		for (int i = 0; i < table.length(); i++) {
+			table.set(i, null);
+		}
+		hits.set(0);
+		misses.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses (%.1f%%)", hits(), misses(), 100 * hitRate());
+	}
+
+	private Object lookup(int op, Type a, Type b) {
+		Entry e = table.get(slot(op, a, b));
+		if (e != null && e.op == op && e.a == a && e.b == b) {
+			if (countHits) {
+				hits.incrementAndGet();
+			}
+			return e.result;
+		}
+		if (countHits) {
+			misses.incrementAndGet();
+		}
+		return null;
+	}
+
+	private void store(int op, Type a, Type b, Object result) {
+		table.set(slot(op, a, b), new Entry(op, a, b, result));
+	}
+
+	private int slot(int op, Type a, Type b) {
+		int h = System.identityHashCode(a) * 31 + System.identityHashCode(b);
+		h = h * 3 + op;
+		// spread the bits, identity hashes are not uniformly distributed in
+		// the low bits on every VM
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h & mask;
+	}
+
+	private static final class Entry {
+		final int op;
+		final Type a;
+		final Type b;
+		final Object result;
+
+		Entry(int op, Type a, Type b, Object result) {
+			this.op = op;
+			this.a = a;
+			this.b = b;
+			this.result = result;
+		}
+	}
+}